@@ -5,8 +5,15 @@ import org.agrona.concurrent.SigIntBarrier;
 
 public class Runner {
 
+    private static final String WARM_UP_ONLY = "--warmup-only";
+
     public static void main(String[] args) throws Exception {
         try (TransferApplication transferApplication = new TransferApplication()) {
+            // training run for the class data sharing archive, see the appcds profile in pom.xml
+            if (args.length > 0 && WARM_UP_ONLY.equals(args[0])) {
+                transferApplication.warmUp();
+                return;
+            }
             transferApplication.start();
             new SigIntBarrier().await();
         }
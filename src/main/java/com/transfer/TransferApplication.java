@@ -1,30 +1,132 @@
 package com.transfer;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.transfer.affinity.CpuLayoutReport;
+import com.transfer.affinity.PinnedThreadFactory;
 import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.AccountStorage;
+import com.transfer.core.InMemoryAccountStorage;
+import com.transfer.core.PerformanceProfiles;
+import com.transfer.core.TieredAccountStorage;
+import com.transfer.ipc.IpcIngress;
 import com.transfer.netty.NettyServer;
+import com.transfer.netty.RateLimiters;
+import com.transfer.netty.RequestTimingSampler;
+import com.transfer.netty.TokenBucketRateLimiter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class TransferApplication implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransferApplication.class);
 
+    private static final String CONFIGURATION_FILE = "configuration.properties";
+    private static final String DISRUPTOR_CPUS = "affinity.disruptor.cpus";
+    private static final String NETTY_BOSS_CPUS = "affinity.netty.boss.cpus";
+    private static final String NETTY_WORKER_CPUS = "affinity.netty.worker.cpus";
+    private static final String WARM_UP_REQUESTS = "warmup.requests";
+    private static final String JFR_SAMPLE_EVERY = "jfr.requestTiming.sampleEvery";
+    private static final String STORAGE_COLD_FILE = "storage.cold.file";
+    private static final String STORAGE_COLD_CAPACITY = "storage.cold.capacity";
+    private static final String STORAGE_HOT_CAPACITY = "storage.hot.capacity";
+    private static final String IPC_DIRECTORY = "ipc.directory";
+    private static final String IPC_COMMANDS_CAPACITY = "ipc.commands.capacity";
+    private static final String IPC_REPLIES_CAPACITY = "ipc.replies.capacity";
+    private static final String RATE_LIMIT_ADDRESS_CAPACITY = "ratelimit.address.capacity";
+    private static final String RATE_LIMIT_ADDRESS_REFILL = "ratelimit.address.refillPerSecond";
+    private static final String RATE_LIMIT_API_KEY_CAPACITY = "ratelimit.apikey.capacity";
+    private static final String RATE_LIMIT_API_KEY_REFILL = "ratelimit.apikey.refillPerSecond";
+    private static final String RATE_LIMIT_ACCOUNT_CAPACITY = "ratelimit.account.capacity";
+    private static final String RATE_LIMIT_ACCOUNT_REFILL = "ratelimit.account.refillPerSecond";
+
     private final AccountOperationsEventProcessor accountOperationsEventProcessor;
     private final NettyServer nettyServer;
+    private final IpcIngress ipcIngress;
+    private final Map<String, int[]> cpuPlacement = new LinkedHashMap<>();
+    private final int warmUpRequests;
+
+    TransferApplication() throws Exception {
+        Configuration configuration = new PropertiesConfiguration(CONFIGURATION_FILE);
 
-    TransferApplication() {
-        this.accountOperationsEventProcessor = new AccountOperationsEventProcessor();
-        this.nettyServer = new NettyServer(accountOperationsEventProcessor);
+        int[] disruptorCpus = PinnedThreadFactory.parseCpus(configuration.getStringArray(DISRUPTOR_CPUS));
+        int[] bossCpus = PinnedThreadFactory.parseCpus(configuration.getStringArray(NETTY_BOSS_CPUS));
+        int[] workerCpus = PinnedThreadFactory.parseCpus(configuration.getStringArray(NETTY_WORKER_CPUS));
+        this.warmUpRequests = configuration.getInt(WARM_UP_REQUESTS, 0);
+        cpuPlacement.put("disruptor.executor", disruptorCpus);
+        cpuPlacement.put("netty.boss", bossCpus);
+        cpuPlacement.put("netty.worker", workerCpus);
+
+        PerformanceProfiles performanceProfiles = PerformanceProfiles.load(configuration);
+        LOGGER.info("Starting with performance profile {}", performanceProfiles.startupProfile().name());
+
+        this.accountOperationsEventProcessor = new AccountOperationsEventProcessor(
+                new PinnedThreadFactory(new ThreadFactoryBuilder().setNameFormat("disruptor.executor-%d").build(), disruptorCpus),
+                performanceProfiles.startupProfile(),
+                accountStorage(configuration));
+        this.nettyServer = new NettyServer(
+                accountOperationsEventProcessor,
+                NettyServer.DEFAULT_PORT,
+                new PinnedThreadFactory(new DefaultThreadFactory("netty.boss"), bossCpus),
+                new PinnedThreadFactory(new DefaultThreadFactory("netty.worker"), workerCpus),
+                new RateLimiters(
+                        new TokenBucketRateLimiter(configuration.getLong(RATE_LIMIT_ADDRESS_CAPACITY, 0), configuration.getLong(RATE_LIMIT_ADDRESS_REFILL, 0)),
+                        new TokenBucketRateLimiter(configuration.getLong(RATE_LIMIT_API_KEY_CAPACITY, 0), configuration.getLong(RATE_LIMIT_API_KEY_REFILL, 0)),
+                        new TokenBucketRateLimiter(configuration.getLong(RATE_LIMIT_ACCOUNT_CAPACITY, 0), configuration.getLong(RATE_LIMIT_ACCOUNT_REFILL, 0))),
+                performanceProfiles,
+                new RequestTimingSampler(configuration.getInt(JFR_SAMPLE_EVERY, 0)));
+        this.ipcIngress = ipcIngress(configuration, accountOperationsEventProcessor);
+    }
+
+    private static AccountStorage accountStorage(Configuration configuration) {
+        String coldFile = configuration.getString(STORAGE_COLD_FILE, "");
+        if (coldFile.isEmpty()) {
+            return new InMemoryAccountStorage();
+        }
+        int hotCapacity = configuration.getInt(STORAGE_HOT_CAPACITY);
+        int coldCapacity = configuration.getInt(STORAGE_COLD_CAPACITY);
+        LOGGER.info("Tiered account storage, {} hot accounts in memory, {} cold slots in {}", hotCapacity, coldCapacity, coldFile);
+        return new TieredAccountStorage(hotCapacity, new File(coldFile), coldCapacity);
+    }
+
+    private static IpcIngress ipcIngress(Configuration configuration, AccountOperationsEventProcessor accountOperationsEventProcessor) {
+        String directory = configuration.getString(IPC_DIRECTORY, "");
+        if (directory.isEmpty()) {
+            return null;
+        }
+        return new IpcIngress(
+                new File(directory),
+                configuration.getInt(IPC_COMMANDS_CAPACITY),
+                configuration.getInt(IPC_REPLIES_CAPACITY),
+                accountOperationsEventProcessor,
+                new ThreadFactoryBuilder().setNameFormat("ipc.ingress-%d").build());
     }
 
     public void start() throws Exception {
         LOGGER.info("About to start exchange application");
+        CpuLayoutReport.log(cpuPlacement);
+        warmUp();
         nettyServer.start();
     }
 
+    public void warmUp() throws Exception {
+        if (warmUpRequests > 0) {
+            new WarmUp(warmUpRequests).run();
+        }
+    }
+
     public void close() {
         LOGGER.info("About to stop exchange application");
         nettyServer.stop();
+        if (ipcIngress != null) {
+            ipcIngress.close();
+        }
         accountOperationsEventProcessor.close();
     }
 }
@@ -0,0 +1,192 @@
+package com.transfer;
+
+import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.netty.NettyHttpUtil;
+import com.transfer.netty.NettyServer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives synthetic traffic through a scratch copy of the real pipeline (sockets, http codecs, handlers, ring buffer)
+// so the hot paths are compiled before the application accepts real load. Nothing touches the real storage.
+class WarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+    private static final int MAX_RESPONSE_LENGTH = 64 * 1024;
+    private static final int STREAMS_IN_FLIGHT = 64;
+    private static final long RESPONSE_TIMEOUT_SECONDS = 5;
+
+    private final int requests;
+    private final Semaphore streams = new Semaphore(STREAMS_IN_FLIGHT);
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    WarmUp(int requests) {
+        this.requests = requests;
+    }
+
+    // returns how many of the synthetic requests were answered with 200
+    int run() throws Exception {
+        LOGGER.info("Warming up with {} synthetic requests", requests);
+        long start = System.nanoTime();
+        succeeded.set(0);
+        NioEventLoopGroup clientGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("warmup.client"));
+        try (AccountOperationsEventProcessor scratchProcessor = new AccountOperationsEventProcessor()) {
+            NettyServer scratchServer = new NettyServer(scratchProcessor, 0);
+            scratchServer.start();
+            try {
+                int port = scratchServer.port();
+                // the server closes an http/1.1 connection after every response, so only the setup goes that way,
+                // enough to load the http/1.1 codec, and the bulk shares one h2c connection the server keeps open
+                String accountFrom = createAccount(port);
+                String accountTo = createAccount(port);
+                Channel connection = connect(clientGroup, port);
+                try {
+                    for (int i = 0; i < requests; i++) {
+                        switch (i % 4) {
+                            case 0:
+                                send(connection, HttpMethod.POST, "/account/transfer", "{\"fromAccount\":\"" + accountFrom + "\",\"toAccount\":\"" + accountTo + "\",\"amount\":1}");
+                                break;
+                            case 1:
+                                send(connection, HttpMethod.POST, "/account/transfer", "{\"fromAccount\":\"" + accountTo + "\",\"toAccount\":\"" + accountFrom + "\",\"amount\":1}");
+                                break;
+                            case 2:
+                                send(connection, HttpMethod.GET, "/account/info?account=" + accountFrom, "");
+                                break;
+                            default:
+                                send(connection, HttpMethod.POST, "/account/create", "{\"amount\":1000000}");
+                                break;
+                        }
+                    }
+                    awaitStreams(STREAMS_IN_FLIGHT);
+                } finally {
+                    connection.close().syncUninterruptibly();
+                }
+            } finally {
+                scratchServer.stop();
+            }
+        } finally {
+            clientGroup.shutdownGracefully().syncUninterruptibly();
+        }
+        LOGGER.info("Warm up finished in {} ms, {} of {} requests succeeded", (System.nanoTime() - start) / 1_000_000, succeeded.get(), requests);
+        return succeeded.get();
+    }
+
+    private static Channel connect(NioEventLoopGroup clientGroup, int port) throws Exception {
+        return new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel socketChannel) {
+                        socketChannel.pipeline().addLast(
+                                Http2FrameCodecBuilder.forClient().build(),
+                                new Http2MultiplexHandler(new ChannelInboundHandlerAdapter())
+                        );
+                    }
+                })
+                .connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+                .sync()
+                .channel();
+    }
+
+    // one stream per request, a round trip crosses four threads so a window of them is kept in flight,
+    // the synthetic transfers move 1 back and forth between well funded accounts and succeed in any order
+    private void send(Channel connection, HttpMethod method, String uri, String payload) throws Exception {
+        awaitStreams(1);
+        Http2StreamChannel stream = new Http2StreamChannelBootstrap(connection)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel streamChannel) {
+                        streamChannel.pipeline().addLast(
+                                new Http2StreamFrameToHttpObjectCodec(false),
+                                new HttpObjectAggregator(MAX_RESPONSE_LENGTH),
+                                new SimpleChannelInboundHandler<FullHttpResponse>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+                                        if (response.status().code() == HttpResponseStatus.OK.code()) {
+                                            succeeded.incrementAndGet();
+                                        }
+                                    }
+                                });
+                        streamChannel.closeFuture().addListener(future -> streams.release());
+                    }
+                })
+                .open()
+                .sync()
+                .getNow();
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri,
+                Unpooled.copiedBuffer(payload, CharsetUtil.UTF_8));
+        request.headers()
+                .set(HttpHeaderNames.HOST, "localhost")
+                .set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), "http")
+                .setInt(HttpHeaderNames.CONTENT_LENGTH, request.content().readableBytes());
+        stream.writeAndFlush(request);
+    }
+
+    private void awaitStreams(int count) throws Exception {
+        if (!streams.tryAcquire(count, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Warm up got no response within " + RESPONSE_TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    private String createAccount(int port) throws Exception {
+        byte[] body = "{\"amount\":1000000}".getBytes(StandardCharsets.UTF_8);
+        String response = sendHttp1(port, "POST /account/create HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: "
+                + body.length + "\r\n\r\n" + new String(body, StandardCharsets.UTF_8));
+        return (String) NettyHttpUtil.extractPostRequestBody(response).get("account");
+    }
+
+    // every http/1.1 response closes the connection, so the body is whatever follows the headers until eof
+    private String sendHttp1(int port, String request) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            String raw = response.toString(StandardCharsets.UTF_8);
+            return raw.substring(raw.indexOf("\r\n\r\n") + 4);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.transfer.affinity;
+
+import net.openhft.affinity.AffinityLock;
+import net.openhft.affinity.CpuLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+public class CpuLayoutReport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CpuLayoutReport.class);
+
+    private CpuLayoutReport() {
+    }
+
+    public static void log(Map<String, int[]> placement) {
+        CpuLayout layout = AffinityLock.cpuLayout();
+        LOGGER.info("Cpu layout: {} cpus, {} sockets, {} cores per socket, {} threads per core",
+                layout.cpus(), layout.sockets(), layout.coresPerSocket(), layout.threadsPerCore());
+
+        int socket = -1;
+        for (Map.Entry<String, int[]> entry : placement.entrySet()) {
+            for (int cpu : entry.getValue()) {
+                if (cpu < 0 || cpu >= layout.cpus()) {
+                    LOGGER.warn("{} configured with cpu {} which is not present on this host", entry.getKey(), cpu);
+                    continue;
+                }
+                LOGGER.info("{} -> cpu {} (socket {}, core {}, thread {})",
+                        entry.getKey(), cpu, layout.socketId(cpu), layout.coreId(cpu), layout.threadId(cpu));
+                if (socket == -1) {
+                    socket = layout.socketId(cpu);
+                } else if (socket != layout.socketId(cpu)) {
+                    LOGGER.warn("{} cpu {} is on socket {}, other pinned threads are on socket {}: ring buffer access will cross NUMA nodes",
+                            entry.getKey(), cpu, layout.socketId(cpu), socket);
+                }
+            }
+        }
+        LOGGER.info("Affinity locks:\n{}", AffinityLock.dumpLocks());
+    }
+}
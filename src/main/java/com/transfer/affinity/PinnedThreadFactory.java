@@ -0,0 +1,99 @@
+package com.transfer.affinity;
+
+import net.openhft.affinity.AffinityLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+public class PinnedThreadFactory implements ThreadFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PinnedThreadFactory.class);
+
+    private final ThreadFactory delegate;
+    private final int[] cpus;
+    private final IntFunction<AffinityLock> locks;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    public PinnedThreadFactory(ThreadFactory delegate, int[] cpus) {
+        this(delegate, cpus, AffinityLock::acquireLock);
+    }
+
+    PinnedThreadFactory(ThreadFactory delegate, int[] cpus, IntFunction<AffinityLock> locks) {
+        this.delegate = delegate;
+        this.cpus = cpus;
+        this.locks = locks;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        if (cpus.length == 0) {
+            return delegate.newThread(runnable);
+        }
+        int cpu = cpus[threadIndex.getAndIncrement() % cpus.length];
+        return delegate.newThread(() -> {
+            AffinityLock lock = acquire(cpu);
+            if (lock == null) {
+                runnable.run();
+                return;
+            }
+            try (lock) {
+                runnable.run();
+            }
+        });
+    }
+
+    // pinning is an optimisation, without native support or a free cpu the thread still runs where the OS puts it
+    private AffinityLock acquire(int cpu) {
+        String name = Thread.currentThread().getName();
+        try {
+            AffinityLock lock = locks.apply(cpu);
+            if (lock.isBound()) {
+                LOGGER.info("Thread {} pinned to cpu {}", name, lock.cpuId());
+            } else {
+                LOGGER.warn("Thread {} could not be pinned to cpu {}, running unpinned", name, cpu);
+            }
+            return lock;
+        } catch (RuntimeException | LinkageError e) {
+            LOGGER.warn("Thread {} could not be pinned to cpu {}, running unpinned", name, cpu, e);
+            return null;
+        }
+    }
+
+    // entries are single cpu ids or inclusive ranges like 2-5
+    public static int[] parseCpus(String[] values) {
+        return Arrays.stream(values)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .flatMapToInt(PinnedThreadFactory::parseCpuEntry)
+                .toArray();
+    }
+
+    private static IntStream parseCpuEntry(String value) {
+        try {
+            int separator = value.indexOf('-', 1);
+            if (separator < 0) {
+                return IntStream.of(parseCpu(value));
+            }
+            int first = parseCpu(value.substring(0, separator).trim());
+            int last = parseCpu(value.substring(separator + 1).trim());
+            if (first > last) {
+                throw new IllegalArgumentException("Not valid cpu range " + value);
+            }
+            return IntStream.rangeClosed(first, last);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not valid cpu " + value, e);
+        }
+    }
+
+    private static int parseCpu(String value) {
+        int cpu = Integer.parseInt(value);
+        if (cpu < 0) {
+            throw new IllegalArgumentException("Not valid cpu " + value);
+        }
+        return cpu;
+    }
+}
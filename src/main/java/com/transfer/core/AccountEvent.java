@@ -1,5 +1,6 @@
 package com.transfer.core;
 
+import com.lmax.disruptor.RingBuffer;
 import io.netty.channel.ChannelHandlerContext;
 
 import java.util.UUID;
@@ -7,11 +8,21 @@ import java.util.function.BiConsumer;
 
 public class AccountEvent {
     long sequence;
+    RingBuffer<AccountEvent> ring;
     public ChannelHandlerContext ctx;
     public UUID accountFrom;
     public UUID accountTo;
     public long amount;
+    public long holdId;
+    public long timeout;
     public EventType eventType;
-    public BiConsumer<ChannelHandlerContext, String> resultConsumer;
-    public BiConsumer<ChannelHandlerContext, Throwable> errorConsumer;
+    public final PostingLegs legs = new PostingLegs();
+    // ipc ingress, identifies the client and command a reply goes to
+    public int clientId;
+    public long correlationId;
+    // handed the event itself, so one preallocated consumer can answer every request through ctx or the ipc fields
+    public BiConsumer<AccountEvent, String> resultConsumer;
+    public BiConsumer<AccountEvent, ResultCode> rejectionConsumer;
+    public BiConsumer<AccountEvent, Throwable> errorConsumer;
+    public RequestTimingEvent timing;
 }
@@ -1,45 +1,167 @@
 package com.transfer.core;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.lmax.disruptor.BusySpinWaitStrategy;
-import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.dsl.Disruptor;
-import com.lmax.disruptor.dsl.ProducerType;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.map.hash.TObjectLongHashMap;
+import org.agrona.DeadlineTimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class AccountOperationsEventProcessor implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountOperationsEventProcessor.class);
 
-    private final Disruptor<AccountEvent> disruptor;
-    private final TObjectLongHashMap<UUID> storage;
-    private final RingBuffer<AccountEvent> ringBuffer;
+    private final Ingress ingress;
+    private final AccountStorage storage;
+    private final BalanceIndex balanceIndex = new BalanceIndex();
+    private final LedgerDigest ledgerDigest = new LedgerDigest();
+    private volatile PerformanceProfile profile;
+    private volatile BalanceListener[] balanceListeners = new BalanceListener[0];
+
+    private static final long DEFAULT_HOLD_TIMEOUT_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long HOLD_EXPIRY_INTERVAL_MS = 10;
+    private static final int TIMER_TICK_RESOLUTION_MS = 8;
+    private static final int TIMER_TICKS_PER_WHEEL = 1024;
+
+    // storage keeps the available balance, money under hold is moved to reserved until captured or released
+    private final TObjectLongHashMap<UUID> reserved;
+    private final TLongObjectHashMap<UUID> holdAccounts;
+    private final TLongLongHashMap holdAmounts;
+    private final TLongLongHashMap holdTimers;
+    private final TLongLongHashMap timerHolds;
+    private final DeadlineTimerWheel holdTimerWheel;
+    private final DeadlineTimerWheel.TimerHandler holdExpiryHandler = this::expireHold;
+    private final ScheduledExecutorService holdExpiryScheduler;
+    private long nextHoldId = 1;
+    private long reservedTotal;
+
+    // set by reject on the consumer thread, read back by handleEvent right after the operation returns null
+    private ResultCode rejection;
+
+    // consumer thread scratch for postings: the new balance of each distinct account, held at its first leg
+    private final long[] postingBalances = new long[PostingLegs.MAX_LEGS];
+    private final int[] postingFirstLegs = new int[PostingLegs.MAX_LEGS];
 
     public AccountOperationsEventProcessor() {
-        this.disruptor = new Disruptor<>(AccountEvent::new, 256, new ThreadFactoryBuilder().setNameFormat("disruptor.executor-%d").build(), ProducerType.MULTI, new BusySpinWaitStrategy());
-        this.storage = new TObjectLongHashMap<>(10, 0.5f, -1);
-        this.disruptor.handleEventsWith(this::handleEvent);
-        this.ringBuffer = this.disruptor.start();
+        this(new ThreadFactoryBuilder().setNameFormat("disruptor.executor-%d").build());
+    }
+
+    public AccountOperationsEventProcessor(ThreadFactory threadFactory) {
+        this(threadFactory, PerformanceProfiles.defaults().startupProfile());
+    }
+
+    public AccountOperationsEventProcessor(ThreadFactory threadFactory, PerformanceProfile profile) {
+        this(threadFactory, profile, new InMemoryAccountStorage());
+    }
+
+    public AccountOperationsEventProcessor(ThreadFactory threadFactory, PerformanceProfile profile, AccountStorage storage) {
+        this.profile = profile;
+        this.storage = storage;
+        this.reserved = new TObjectLongHashMap<>(10, 0.5f, 0);
+        this.holdAccounts = new TLongObjectHashMap<>(10, 0.5f, -1);
+        this.holdAmounts = new TLongLongHashMap(10, 0.5f, -1, -1);
+        this.holdTimers = new TLongLongHashMap(10, 0.5f, -1, DeadlineTimerWheel.NULL_TIMER);
+        this.timerHolds = new TLongLongHashMap(10, 0.5f, DeadlineTimerWheel.NULL_TIMER, -1);
+        this.holdTimerWheel = new DeadlineTimerWheel(TimeUnit.MILLISECONDS, currentTimeMillis(), TIMER_TICK_RESOLUTION_MS, TIMER_TICKS_PER_WHEEL);
+        this.ingress = PerformanceProfile.PER_EVENT_LOOP.equals(profile.ingress())
+                ? new PerEventLoopIngress(threadFactory, profile, this::handleEvent)
+                : new MultiProducerIngress(threadFactory, profile, this::handleEvent);
+
+        this.holdExpiryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("hold.expiry-%d").setDaemon(true).build());
+        this.holdExpiryScheduler.scheduleAtFixedRate(this::publishHoldExpiry, HOLD_EXPIRY_INTERVAL_MS, HOLD_EXPIRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     public AccountEvent nextEvent() {
-        long sequence = ringBuffer.next();
-        AccountEvent event = ringBuffer.get(sequence);
-        event.sequence = sequence;
-        return event;
+        return ingress.next();
     }
 
     public void publishEvent(AccountEvent accountEvent) {
-        this.ringBuffer.publish(accountEvent.sequence);
+        ingress.publish(accountEvent);
+    }
+
+    // run on each event loop thread with its index in the group, unbound threads share one multi producer queue
+    public void bindIngressLane(int lane) {
+        ingress.bindLane(lane);
+    }
+
+    // called from netty threads once a request is validated, before its ring slot is claimed
+    public void prefetch(UUID account) {
+        storage.prefetch(account);
+    }
+
+    public BalanceIndex balanceIndex() {
+        return balanceIndex;
+    }
+
+    public synchronized void addBalanceListener(BalanceListener balanceListener) {
+        BalanceListener[] listeners = Arrays.copyOf(balanceListeners, balanceListeners.length + 1);
+        listeners[listeners.length - 1] = balanceListener;
+        balanceListeners = listeners;
+    }
+
+    public synchronized void removeBalanceListener(BalanceListener balanceListener) {
+        balanceListeners = Arrays.stream(balanceListeners)
+                .filter(listener -> listener != balanceListener)
+                .toArray(BalanceListener[]::new);
+    }
+
+    public PerformanceProfile profile() {
+        return profile;
+    }
+
+    // only the wait strategy can change on a running ring, so that is all a switch takes from the requested profile
+    public void switchProfile(PerformanceProfile profile) {
+        PerformanceProfile running = this.profile.withWaitStrategy(profile.waitStrategy());
+        LOGGER.info("Switching wait strategy of profile {} from {} to {} of profile {}",
+                running.name(), this.profile.waitStrategy(), running.waitStrategy(), profile.name());
+        this.ingress.switchProfile(running);
+        this.profile = running;
+    }
+
+    // hold expiry runs on the consumer thread like every other storage mutation, the scheduler only injects the tick
+    private void publishHoldExpiry() {
+        AccountEvent event = ingress.tryNext();
+        if (event == null) {
+            return;
+        }
+        event.eventType = EventType.EXPIRE_HOLDS;
+        event.ctx = null;
+        event.timing = null;
+        ingress.publish(event);
     }
 
     private void handleEvent(AccountEvent event, long sequence, boolean endOfBatch) {
+        RequestTimingEvent timing = event.timing;
+        if (timing != null) {
+            timing.handleStartNanos = System.nanoTime();
+            timing.sequence = sequence;
+        }
         String response;
         try {
             switch (event.eventType) {
+                case EXPIRE_HOLDS: {
+                    expireHolds();
+                    return;
+                }
+                case HOLD: {
+                    response = hold(event);
+                    break;
+                }
+                case CAPTURE: {
+                    response = capture(event);
+                    break;
+                }
+                case RELEASE: {
+                    response = release(event);
+                    break;
+                }
                 case CREATE: {
                     response = createAccount(event);
                     break;
@@ -52,15 +174,41 @@ public class AccountOperationsEventProcessor implements AutoCloseable {
                     response = transfer(event);
                     break;
                 }
+                case POSTING: {
+                    response = posting(event);
+                    break;
+                }
+                case DIGEST: {
+                    response = ledgerDigest(sequence);
+                    break;
+                }
                 default: {
-                    event.errorConsumer.accept(event.ctx, new IllegalArgumentException("Not supported operation"));
-                    return;
+                    response = reject(ResultCode.UNSUPPORTED_OPERATION);
+                    break;
                 }
             }
-            event.resultConsumer.accept(event.ctx, response);
+            markHandled(timing);
+            if (response == null) {
+                LOGGER.debug("Event {} rejected with {}", event.eventType, rejection);
+                event.rejectionConsumer.accept(event, rejection);
+            } else {
+                event.resultConsumer.accept(event, response);
+            }
         } catch (Exception ex) {
+            markHandled(timing);
             LOGGER.error("Problems during event processing", ex);
-            event.errorConsumer.accept(event.ctx, ex);
+            event.errorConsumer.accept(event, ex);
+        }
+    }
+
+    private String reject(ResultCode resultCode) {
+        rejection = resultCode;
+        return null;
+    }
+
+    private static void markHandled(RequestTimingEvent timing) {
+        if (timing != null) {
+            timing.handleEndNanos = System.nanoTime();
         }
     }
 
@@ -68,52 +216,238 @@ public class AccountOperationsEventProcessor implements AutoCloseable {
         UUID fromAccount = event.accountFrom;
         long fromAmount = storage.get(fromAccount);
         if (fromAmount == -1) {
-            throw new IllegalArgumentException("from account not present in storage");
+            return reject(ResultCode.FROM_ACCOUNT_NOT_FOUND);
         }
 
         UUID toAccount = event.accountTo;
         long toAmount = storage.get(toAccount);
 
         if (toAmount == -1) {
-            throw new IllegalArgumentException("to account not present in storage");
+            return reject(ResultCode.TO_ACCOUNT_NOT_FOUND);
+        }
+
+        // both balances are read up front, crediting the account just debited would create money
+        if (fromAccount.equals(toAccount)) {
+            return reject(ResultCode.SAME_ACCOUNT);
         }
 
         long amount = event.amount;
 
         if (amount < 0) {
-            throw new IllegalArgumentException("Should not be less then 0");
+            return reject(ResultCode.INVALID_AMOUNT);
         }
 
         if (fromAmount < amount) {
-            throw new IllegalArgumentException("Not enough money for transfer");
+            return reject(ResultCode.INSUFFICIENT_FUNDS);
         }
 
-        storage.put(fromAccount, fromAmount - amount);
-        storage.put(toAccount, toAmount + amount);
+        setBalance(fromAccount, fromAmount - amount);
+        setBalance(toAccount, toAmount + amount);
 
         LOGGER.info("Transfer from account {} to account {}, amount {}", fromAccount, toAccount, amount);
 
         return "{\"status\":\"success\" }";
     }
 
+    // every leg is checked against balances read once before any is written, so a posting is applied whole or not at all
+    private String posting(AccountEvent event) {
+        PostingLegs legs = event.legs;
+        int size = legs.size();
+        if (size < 2) {
+            return reject(ResultCode.MALFORMED_REQUEST);
+        }
+
+        long net = 0;
+        for (int leg = 0; leg < size; leg++) {
+            UUID account = legs.account(leg);
+            long amount = legs.amount(leg);
+            int firstLeg = firstLeg(legs, leg);
+            postingFirstLegs[leg] = firstLeg;
+            if (firstLeg == leg) {
+                long balance = storage.get(account);
+                if (balance == AccountStorage.NO_ACCOUNT) {
+                    return reject(ResultCode.ACCOUNT_NOT_FOUND);
+                }
+                postingBalances[leg] = balance;
+            }
+            try {
+                postingBalances[firstLeg] = Math.addExact(postingBalances[firstLeg], amount);
+                net = Math.addExact(net, amount);
+            } catch (ArithmeticException e) {
+                return reject(ResultCode.INVALID_AMOUNT);
+            }
+        }
+
+        if (net != 0) {
+            return reject(ResultCode.UNBALANCED_POSTING);
+        }
+
+        for (int leg = 0; leg < size; leg++) {
+            if (postingFirstLegs[leg] == leg && postingBalances[leg] < 0) {
+                return reject(ResultCode.INSUFFICIENT_FUNDS);
+            }
+        }
+
+        for (int leg = 0; leg < size; leg++) {
+            if (postingFirstLegs[leg] == leg) {
+                setBalance(legs.account(leg), postingBalances[leg]);
+            }
+        }
+
+        LOGGER.info("Posting of {} legs applied", size);
+
+        return "{\"status\":\"success\" }";
+    }
+
+    private static int firstLeg(PostingLegs legs, int leg) {
+        UUID account = legs.account(leg);
+        for (int earlier = 0; earlier < leg; earlier++) {
+            if (account.equals(legs.account(earlier))) {
+                return earlier;
+            }
+        }
+        return leg;
+    }
+
     private String accountInfo(AccountEvent event) {
         UUID uuid = event.accountFrom;
         long amount = storage.get(uuid);
         if (amount == -1) {
-            throw new IllegalArgumentException("account not present");
+            return reject(ResultCode.ACCOUNT_NOT_FOUND);
+        }
+
+        long reservedAmount = reserved.get(uuid);
+        LOGGER.info("{} available amount, {} reserved amount for account {}", amount, reservedAmount, uuid);
+        return String.format("{\"amount\":%d, \"reserved\":%d }", amount, reservedAmount);
+    }
+
+    // answered on the consumer thread, so digest and totals are exact as of this event's ring sequence
+    private String ledgerDigest(long sequence) {
+        return String.format("{\"sequence\":%d, \"digest\":\"%016x\", \"accounts\":%d, \"total\":%d, \"reserved\":%d }",
+                sequence, ledgerDigest.digest(), ledgerDigest.accounts(), ledgerDigest.total(), reservedTotal);
+    }
+
+    private String hold(AccountEvent event) {
+        UUID account = event.accountFrom;
+        long available = storage.get(account);
+        if (available == -1) {
+            return reject(ResultCode.ACCOUNT_NOT_FOUND);
+        }
+
+        long amount = event.amount;
+        if (amount < 0) {
+            return reject(ResultCode.INVALID_AMOUNT);
+        }
+
+        if (available < amount) {
+            return reject(ResultCode.INSUFFICIENT_FUNDS);
+        }
+
+        long timeout = event.timeout > 0 ? event.timeout : DEFAULT_HOLD_TIMEOUT_MS;
+        long holdId = nextHoldId++;
+        long timerId = holdTimerWheel.scheduleTimer(currentTimeMillis() + timeout);
+
+        setBalance(account, available - amount);
+        reserved.adjustOrPutValue(account, amount, amount);
+        reservedTotal += amount;
+        holdAccounts.put(holdId, account);
+        holdAmounts.put(holdId, amount);
+        holdTimers.put(holdId, timerId);
+        timerHolds.put(timerId, holdId);
+
+        LOGGER.info("Hold {} on account {}, amount {}, expires in {} ms", holdId, account, amount, timeout);
+        return String.format("{\"hold\":%d }", holdId);
+    }
+
+    private String capture(AccountEvent event) {
+        long holdId = event.holdId;
+        UUID fromAccount = holdAccounts.get(holdId);
+        if (fromAccount == null) {
+            return reject(ResultCode.HOLD_NOT_FOUND);
+        }
+
+        UUID toAccount = event.accountTo;
+        long toAmount = storage.get(toAccount);
+        if (toAmount == -1) {
+            return reject(ResultCode.TO_ACCOUNT_NOT_FOUND);
+        }
+
+        long amount = removeHold(holdId, fromAccount);
+        setBalance(toAccount, toAmount + amount);
+
+        LOGGER.info("Hold {} captured from account {} to account {}, amount {}", holdId, fromAccount, toAccount, amount);
+        return "{\"status\":\"success\" }";
+    }
+
+    private String release(AccountEvent event) {
+        long holdId = event.holdId;
+        UUID account = holdAccounts.get(holdId);
+        if (account == null) {
+            return reject(ResultCode.HOLD_NOT_FOUND);
+        }
+
+        long amount = removeHold(holdId, account);
+        setBalance(account, storage.get(account) + amount);
+
+        LOGGER.info("Hold {} released on account {}, amount {}", holdId, account, amount);
+        return "{\"status\":\"success\" }";
+    }
+
+    private void expireHolds() {
+        long now = currentTimeMillis();
+        while (now >= holdTimerWheel.currentTickTime()) {
+            holdTimerWheel.poll(now, holdExpiryHandler, Integer.MAX_VALUE);
         }
+    }
 
-        LOGGER.info("{} available amount for account {}", amount, uuid);
-        return String.format("{\"amount\":%d }", amount);
+    private boolean expireHold(TimeUnit timeUnit, long now, long timerId) {
+        long holdId = timerHolds.remove(timerId);
+        UUID account = holdAccounts.get(holdId);
+        holdTimers.remove(holdId);
+
+        long amount = removeHold(holdId, account);
+        setBalance(account, storage.get(account) + amount);
+
+        LOGGER.info("Hold {} expired on account {}, amount {}", holdId, account, amount);
+        return true;
+    }
+
+    private long removeHold(long holdId, UUID account) {
+        long timerId = holdTimers.remove(holdId);
+        if (timerId != DeadlineTimerWheel.NULL_TIMER) {
+            holdTimerWheel.cancelTimer(timerId);
+            timerHolds.remove(timerId);
+        }
+        holdAccounts.remove(holdId);
+        long amount = holdAmounts.remove(holdId);
+        reserved.adjustValue(account, -amount);
+        reservedTotal -= amount;
+        return amount;
+    }
+
+    private void setBalance(UUID account, long balance) {
+        long previous = storage.put(account, balance);
+        balanceIndex.update(account, previous, balance);
+        ledgerDigest.update(account, previous, balance);
+        for (BalanceListener listener : balanceListeners) {
+            listener.balanceChanged(account, balance);
+        }
+    }
+
+    private static long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
     }
 
     private String createAccount(AccountEvent event) {
         long amount = event.amount;
         if (amount < 0) {
-            throw new IllegalArgumentException("Should not be less then 0");
+            return reject(ResultCode.INVALID_AMOUNT);
+        }
+        if (storage.isFull()) {
+            return reject(ResultCode.STORAGE_FULL);
         }
         UUID uuid = UUID.randomUUID();
-        storage.put(uuid, amount);
+        setBalance(uuid, amount);
 
         LOGGER.info("{} account created with amount {}", uuid, amount);
         return String.format("{\"account\":\"%s\" }", uuid.toString());
@@ -121,6 +455,8 @@ public class AccountOperationsEventProcessor implements AutoCloseable {
 
     @Override
     public void close() {
-        disruptor.shutdown();
+        holdExpiryScheduler.shutdown();
+        ingress.close();
+        storage.close();
     }
 }
@@ -0,0 +1,30 @@
+package com.transfer.core;
+
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+// Available balance per account. Read and written only from the disruptor thread, except prefetch.
+public interface AccountStorage extends AutoCloseable {
+
+    long NO_ACCOUNT = -1;
+
+    long get(UUID account);
+
+    // returns the previous balance or NO_ACCOUNT
+    long put(UUID account, long balance);
+
+    // visits every account once with its current balance, in no particular order
+    void forEach(ObjLongConsumer<UUID> consumer);
+
+    // true when one more account would not fit, checked before creating an account instead of failing in put
+    default boolean isFull() {
+        return false;
+    }
+
+    // hint from a netty thread that the account is about to be used, safe to call concurrently with get and put
+    default void prefetch(UUID account) {
+    }
+
+    @Override
+    void close();
+}
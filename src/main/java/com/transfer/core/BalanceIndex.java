@@ -0,0 +1,79 @@
+package com.transfer.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Accounts ordered by available balance. Written only from the disruptor thread, O(log n) per balance change,
+// read lock free from netty threads. Readers get a weakly consistent view: an account that changes balance
+// during a query can be missed or, between removal of the old and insertion of the new entry, seen at neither.
+public class BalanceIndex {
+
+    private static final UUID MIN_ACCOUNT = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID MAX_ACCOUNT = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    void update(UUID account, long oldBalance, long newBalance) {
+        if (oldBalance == newBalance) {
+            return;
+        }
+        if (oldBalance >= 0) {
+            entries.remove(new Entry(account, oldBalance));
+        }
+        entries.add(new Entry(account, newBalance));
+    }
+
+    public List<Entry> top(int limit) {
+        return collect(entries.descendingIterator(), limit);
+    }
+
+    public List<Entry> range(long from, long to, int limit) {
+        if (from > to) {
+            return List.of();
+        }
+        NavigableSet<Entry> range = entries.subSet(new Entry(MIN_ACCOUNT, from), true, new Entry(MAX_ACCOUNT, to), true);
+        return collect(range.descendingIterator(), limit);
+    }
+
+    private static List<Entry> collect(Iterator<Entry> iterator, int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, 1024));
+        while (iterator.hasNext() && result.size() < limit) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    public static class Entry implements Comparable<Entry> {
+        public final UUID account;
+        public final long balance;
+
+        Entry(UUID account, long balance) {
+            this.account = account;
+            this.balance = balance;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Long.compare(balance, other.balance);
+            return result != 0 ? result : account.compareTo(other.account);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return balance == entry.balance && account.equals(entry.account);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * account.hashCode() + Long.hashCode(balance);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+// Called on the disruptor thread after every balance change, implementations must hand off and return.
+public interface BalanceListener {
+    void balanceChanged(UUID account, long balance);
+}
@@ -0,0 +1,138 @@
+package com.transfer.core;
+
+import org.agrona.IoUtil;
+import org.agrona.UnsafeAccess;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+// Open addressing hash of (account, balance) records in a memory mapped file, paged in by the OS on demand.
+// A record is the two halves of the account id followed by the balance, an all zero id marks a free slot;
+// random UUIDs always carry version bits, so no real account is all zero. Accounts are never removed.
+// The file lives from start to close of one process, it is truncated on open and deleted on close.
+class ColdAccountFile implements AutoCloseable {
+
+    private static final long MAGIC = 0x5452414E53464552L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int HEADER_LENGTH = 64;
+    private static final int RECORD_LENGTH = 24;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH;
+
+    private final MappedByteBuffer mappedBuffer;
+    private final UnsafeBuffer buffer;
+    private final int mask;
+    private long size;
+
+    private final File file;
+
+    ColdAccountFile(File file, int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity should be a power of 2 not greater then " + MAX_CAPACITY);
+        }
+        this.file = file;
+        long length = HEADER_LENGTH + (long) capacity * RECORD_LENGTH;
+        // a spill area, not persistence: balances left by a previous run would come back without their holds,
+        // index and digest entries, and after a crash without the dirty hot entries, so every start begins empty
+        if (file.exists() && !file.delete()) {
+            throw new IllegalArgumentException("Can not truncate cold account file " + file);
+        }
+        // sparse, pages of free slots cost nothing until touched
+        this.mappedBuffer = IoUtil.mapNewFile(file, length, false);
+        this.buffer = new UnsafeBuffer(mappedBuffer);
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        buffer.putLong(CAPACITY_OFFSET, capacity);
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    long get(UUID account) {
+        int offset = find(account.getMostSignificantBits(), account.getLeastSignificantBits());
+        return offset < 0 ? AccountStorage.NO_ACCOUNT : buffer.getLong(offset + 16);
+    }
+
+    void put(UUID account, long balance) {
+        long mostSigBits = account.getMostSignificantBits();
+        long leastSigBits = account.getLeastSignificantBits();
+        int offset = find(mostSigBits, leastSigBits);
+        if (offset < 0) {
+            if (size > mask) {
+                throw new IllegalStateException("Cold account file is full, capacity " + (mask + 1));
+            }
+            offset = -offset - 1;
+            buffer.putLong(offset, mostSigBits);
+            buffer.putLong(offset + 8, leastSigBits);
+            buffer.putLong(SIZE_OFFSET, ++size);
+        }
+        buffer.putLong(offset + 16, balance);
+    }
+
+    // walks the probe sequence without looking at the result, only to fault the pages in ahead of the consumer
+    long touch(UUID account) {
+        long mostSigBits = account.getMostSignificantBits();
+        long leastSigBits = account.getLeastSignificantBits();
+        long seen = 0;
+        for (int slot = slot(mostSigBits, leastSigBits), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            int offset = offset(slot);
+            long slotMostSigBits = buffer.getLong(offset);
+            seen += slotMostSigBits;
+            if (slotMostSigBits == 0 || (slotMostSigBits == mostSigBits && buffer.getLong(offset + 8) == leastSigBits)) {
+                break;
+            }
+        }
+        return seen;
+    }
+
+    void forEach(ObjLongConsumer<UUID> consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            int offset = offset(slot);
+            long mostSigBits = buffer.getLong(offset);
+            long leastSigBits = buffer.getLong(offset + 8);
+            if (mostSigBits != 0 || leastSigBits != 0) {
+                consumer.accept(new UUID(mostSigBits, leastSigBits), buffer.getLong(offset + 16));
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    // offset of the record, or -(offset of the free slot it would go to) - 1
+    private int find(long mostSigBits, long leastSigBits) {
+        for (int slot = slot(mostSigBits, leastSigBits), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            int offset = offset(slot);
+            long slotMostSigBits = buffer.getLong(offset);
+            long slotLeastSigBits = buffer.getLong(offset + 8);
+            if (slotMostSigBits == 0 && slotLeastSigBits == 0) {
+                return -offset - 1;
+            }
+            if (slotMostSigBits == mostSigBits && slotLeastSigBits == leastSigBits) {
+                return offset;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private int slot(long mostSigBits, long leastSigBits) {
+        long hash = (mostSigBits ^ leastSigBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_LENGTH + slot * RECORD_LENGTH;
+    }
+
+    @Override
+    public void close() {
+        // IoUtil.unmap reaches into FileChannelImpl, which newer JDKs no longer open up
+        UnsafeAccess.UNSAFE.invokeCleaner(mappedBuffer);
+        if (!file.delete()) {
+            throw new IllegalStateException("Can not delete cold account file " + file);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 package com.transfer.core;
 
 public enum EventType {
-    CREATE, INFO, TRANSFER
+    CREATE, INFO, TRANSFER, HOLD, CAPTURE, RELEASE, EXPIRE_HOLDS, DIGEST, POSTING
 }
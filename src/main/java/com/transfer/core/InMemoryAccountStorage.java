@@ -0,0 +1,33 @@
+package com.transfer.core;
+
+import gnu.trove.map.hash.TObjectLongHashMap;
+
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+public class InMemoryAccountStorage implements AccountStorage {
+
+    private final TObjectLongHashMap<UUID> storage = new TObjectLongHashMap<>(10, 0.5f, NO_ACCOUNT);
+
+    @Override
+    public long get(UUID account) {
+        return storage.get(account);
+    }
+
+    @Override
+    public long put(UUID account, long balance) {
+        return storage.put(account, balance);
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<UUID> consumer) {
+        storage.forEachEntry((account, balance) -> {
+            consumer.accept(account, balance);
+            return true;
+        });
+    }
+
+    @Override
+    public void close() {
+    }
+}
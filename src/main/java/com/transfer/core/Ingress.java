@@ -0,0 +1,22 @@
+package com.transfer.core;
+
+// How claimed events reach the consumer thread, picked by the ingress setting of the startup profile.
+interface Ingress extends AutoCloseable {
+
+    AccountEvent next();
+
+    // null when the ring is full, for producers that would rather skip than wait
+    AccountEvent tryNext();
+
+    void publish(AccountEvent event);
+
+    void switchProfile(PerformanceProfile profile);
+
+    // called on the producer thread itself, binds it to its own queue where the ingress has one per event loop
+    default void bindLane(int lane) {
+    }
+
+    // returns once every published event has been handled, or after a bounded wait for one that never will be
+    @Override
+    void close();
+}
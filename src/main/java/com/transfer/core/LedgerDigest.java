@@ -0,0 +1,56 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+// Order independent digest of the (account, balance) pairs in storage, kept up to date in O(1) per balance change.
+// Every pair is mixed into a 64 bit hash and the hashes are summed, so two ledgers holding the same pairs agree on
+// the digest whatever order the changes arrived in. Written only from the disruptor thread.
+public class LedgerDigest {
+
+    private long digest;
+    private long total;
+    private long accounts;
+
+    void update(UUID account, long oldBalance, long newBalance) {
+        if (oldBalance >= 0) {
+            digest -= hash(account, oldBalance);
+            total -= oldBalance;
+        } else {
+            accounts++;
+        }
+        digest += hash(account, newBalance);
+        total += newBalance;
+    }
+
+    public long digest() {
+        return digest;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public long accounts() {
+        return accounts;
+    }
+
+    // full walk, what update saves us from doing, kept for verifying a snapshot or a replica from scratch
+    public static long digestOf(AccountStorage storage) {
+        long[] digest = new long[1];
+        storage.forEach((account, balance) -> digest[0] += hash(account, balance));
+        return digest[0];
+    }
+
+    static long hash(UUID account, long balance) {
+        long hash = mix(account.getMostSignificantBits() ^ 0x9E3779B97F4A7C15L);
+        hash = mix(hash ^ account.getLeastSignificantBits());
+        return mix(hash ^ balance);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,60 @@
+package com.transfer.core;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import java.util.concurrent.ThreadFactory;
+
+// One disruptor ring shared by every producer, claims go through a CAS on the ring cursor.
+class MultiProducerIngress implements Ingress {
+
+    private final Disruptor<AccountEvent> disruptor;
+    private final RingBuffer<AccountEvent> ringBuffer;
+    private final SwitchableWaitStrategy waitStrategy;
+
+    MultiProducerIngress(ThreadFactory threadFactory, PerformanceProfile profile, EventHandler<AccountEvent> handler) {
+        this.waitStrategy = new SwitchableWaitStrategy(profile.newWaitStrategy());
+        this.disruptor = new Disruptor<>(AccountEvent::new, profile.ringSize(), threadFactory, ProducerType.MULTI, waitStrategy);
+        this.disruptor.handleEventsWith(handler);
+        this.ringBuffer = disruptor.start();
+    }
+
+    @Override
+    public AccountEvent next() {
+        long sequence = ringBuffer.next();
+        AccountEvent event = ringBuffer.get(sequence);
+        event.sequence = sequence;
+        return event;
+    }
+
+    @Override
+    public AccountEvent tryNext() {
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return null;
+        }
+        AccountEvent event = ringBuffer.get(sequence);
+        event.sequence = sequence;
+        return event;
+    }
+
+    @Override
+    public void publish(AccountEvent event) {
+        ringBuffer.publish(event.sequence);
+    }
+
+    @Override
+    public void switchProfile(PerformanceProfile profile) {
+        waitStrategy.switchTo(profile.newWaitStrategy());
+    }
+
+    @Override
+    public void close() {
+        disruptor.shutdown();
+    }
+}
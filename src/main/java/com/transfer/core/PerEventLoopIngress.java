@@ -0,0 +1,152 @@
+package com.transfer.core;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.agrona.concurrent.IdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// One single producer ring per event loop thread, so claiming a slot is a plain increment instead of a CAS every
+// event loop contends on. NettyServer binds each worker event loop to the lane of its index in the group; every
+// other thread, such as the ipc poller or the hold expiry scheduler, shares one multi producer ring. The consumer visits every ring in turn and handles at most
+// BATCH_SIZE events from each, so one busy event loop can not starve the others.
+class PerEventLoopIngress implements Ingress {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PerEventLoopIngress.class);
+    private static final int BATCH_SIZE = 64;
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final RingBuffer<AccountEvent>[] lanes;
+    private final RingBuffer<AccountEvent> shared;
+    private final RingBuffer<AccountEvent>[] rings;
+    private final EventPoller<AccountEvent>[] pollers;
+    private final FastThreadLocal<RingBuffer<AccountEvent>> threadLane = new FastThreadLocal<>() {
+        @Override
+        protected RingBuffer<AccountEvent> initialValue() {
+            return shared;
+        }
+    };
+    private final EventHandler<AccountEvent> handler;
+    private final Thread consumer;
+    private volatile IdleStrategy idleStrategy;
+    private volatile boolean running = true;
+
+    // consumer thread only, events are numbered in the order they are handled across all rings
+    private long handled;
+    private int batched;
+
+    @SuppressWarnings("unchecked")
+    PerEventLoopIngress(ThreadFactory threadFactory, PerformanceProfile profile, EventHandler<AccountEvent> handler) {
+        this.handler = handler;
+        this.idleStrategy = profile.newIdleStrategy();
+        this.lanes = new RingBuffer[profile.eventLoopThreads()];
+        this.rings = new RingBuffer[lanes.length + 1];
+        this.pollers = new EventPoller[rings.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = RingBuffer.createSingleProducer(AccountEvent::new, profile.ringSize(), new BusySpinWaitStrategy());
+            rings[i] = lanes[i];
+        }
+        this.shared = RingBuffer.createMultiProducer(AccountEvent::new, profile.ringSize(), new BusySpinWaitStrategy());
+        rings[lanes.length] = shared;
+        for (int i = 0; i < rings.length; i++) {
+            pollers[i] = rings[i].newPoller();
+            rings[i].addGatingSequences(pollers[i].getSequence());
+        }
+        this.consumer = threadFactory.newThread(this::consume);
+        this.consumer.start();
+    }
+
+    @Override
+    public AccountEvent next() {
+        RingBuffer<AccountEvent> ring = threadLane.get();
+        long sequence = ring.next();
+        AccountEvent event = ring.get(sequence);
+        event.sequence = sequence;
+        event.ring = ring;
+        return event;
+    }
+
+    @Override
+    public AccountEvent tryNext() {
+        long sequence;
+        try {
+            sequence = shared.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return null;
+        }
+        AccountEvent event = shared.get(sequence);
+        event.sequence = sequence;
+        event.ring = shared;
+        return event;
+    }
+
+    @Override
+    public void publish(AccountEvent event) {
+        event.ring.publish(event.sequence);
+    }
+
+    @Override
+    public void bindLane(int lane) {
+        if (lane < lanes.length) {
+            threadLane.set(lanes[lane]);
+        } else {
+            LOGGER.warn("No lane {} for {}, only {} lanes, it publishes to the shared ring", lane, Thread.currentThread().getName(), lanes.length);
+        }
+    }
+
+    @Override
+    public void switchProfile(PerformanceProfile profile) {
+        idleStrategy = profile.newIdleStrategy();
+    }
+
+    private void consume() {
+        EventPoller.Handler<AccountEvent> pollHandler = this::onEvent;
+        while (running) {
+            int workCount = 0;
+            for (EventPoller<AccountEvent> poller : pollers) {
+                batched = 0;
+                try {
+                    poller.poll(pollHandler);
+                } catch (Exception e) {
+                    LOGGER.error("Problems during ingress polling", e);
+                }
+                workCount += batched;
+            }
+            idleStrategy.idle(workCount);
+        }
+    }
+
+    private boolean onEvent(AccountEvent event, long sequence, boolean endOfBatch) throws Exception {
+        batched++;
+        handler.onEvent(event, handled++, endOfBatch || batched == BATCH_SIZE);
+        return batched < BATCH_SIZE;
+    }
+
+    @Override
+    public void close() {
+        // a slot claimed but never published would hold the drain forever
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        for (RingBuffer<AccountEvent> ring : rings) {
+            while (ring.getMinimumGatingSequence() < ring.getCursor()) {
+                if (System.nanoTime() - deadline > 0) {
+                    LOGGER.warn("Stopping with {} events left in an ingress ring", ring.getCursor() - ring.getMinimumGatingSequence());
+                    break;
+                }
+                Thread.yield();
+            }
+        }
+        running = false;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.transfer.core;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.LiteTimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+public class PerformanceProfile {
+
+    static final String BUSY_SPIN = "busy-spin";
+    static final String YIELDING = "yielding";
+    static final String SLEEPING = "sleeping";
+    static final String BLOCKING = "blocking";
+
+    public static final String MULTI_PRODUCER = "multi-producer";
+    public static final String PER_EVENT_LOOP = "per-event-loop";
+
+    private static final long BLOCKING_TIMEOUT_MS = 10;
+    private static final long SLEEPING_IDLE_NS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BLOCKING_IDLE_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final String waitStrategy;
+    private final int ringSize;
+    private final int flushConsolidation;
+    private final int eventLoopThreads;
+    private final String ingress;
+
+    public PerformanceProfile(String name, String waitStrategy, int ringSize, int flushConsolidation, int eventLoopThreads) {
+        this(name, waitStrategy, ringSize, flushConsolidation, eventLoopThreads, MULTI_PRODUCER);
+    }
+
+    public PerformanceProfile(String name, String waitStrategy, int ringSize, int flushConsolidation, int eventLoopThreads, String ingress) {
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size should be a power of 2");
+        }
+        if (eventLoopThreads < 1) {
+            throw new IllegalArgumentException("Should be at least one event loop thread");
+        }
+        if (!MULTI_PRODUCER.equals(ingress) && !PER_EVENT_LOOP.equals(ingress)) {
+            throw new IllegalArgumentException("Not supported ingress " + ingress);
+        }
+        this.name = name;
+        this.waitStrategy = waitStrategy;
+        this.ringSize = ringSize;
+        this.flushConsolidation = flushConsolidation;
+        this.eventLoopThreads = eventLoopThreads;
+        this.ingress = ingress;
+        newWaitStrategy();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String waitStrategy() {
+        return waitStrategy;
+    }
+
+    public int ringSize() {
+        return ringSize;
+    }
+
+    public int flushConsolidation() {
+        return flushConsolidation;
+    }
+
+    public int eventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public String ingress() {
+        return ingress;
+    }
+
+    WaitStrategy newWaitStrategy() {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case BLOCKING:
+                return new LiteTimeoutBlockingWaitStrategy(BLOCKING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            default:
+                throw new IllegalArgumentException("Not supported wait strategy " + waitStrategy);
+        }
+    }
+
+    // the per event loop consumer polls several rings, so it idles between polls instead of waiting on one barrier
+    public IdleStrategy newIdleStrategy() {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return new BusySpinIdleStrategy();
+            case YIELDING:
+                return new YieldingIdleStrategy();
+            case SLEEPING:
+                return new SleepingIdleStrategy(SLEEPING_IDLE_NS);
+            case BLOCKING:
+                return new SleepingIdleStrategy(BLOCKING_IDLE_NS);
+            default:
+                throw new IllegalArgumentException("Not supported wait strategy " + waitStrategy);
+        }
+    }
+
+    // the running profile after a switch, everything but the wait strategy stays as the ring was built
+    public PerformanceProfile withWaitStrategy(String waitStrategy) {
+        return new PerformanceProfile(name, waitStrategy, ringSize, flushConsolidation, eventLoopThreads, ingress);
+    }
+}
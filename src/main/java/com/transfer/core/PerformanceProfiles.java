@@ -0,0 +1,71 @@
+package com.transfer.core;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PerformanceProfiles {
+
+    public static final String LOWEST_LATENCY = "lowest-latency";
+    public static final String THROUGHPUT = "throughput";
+    public static final String LOW_CPU = "low-cpu";
+
+    private static final String ACTIVE_PROFILE = "profile";
+    private static final String PROFILE_PREFIX = "profile.";
+
+    private final Map<String, PerformanceProfile> profiles;
+    private final String startupProfile;
+
+    private PerformanceProfiles(Map<String, PerformanceProfile> profiles, String startupProfile) {
+        if (!profiles.containsKey(startupProfile)) {
+            throw new IllegalArgumentException("Not known profile " + startupProfile);
+        }
+        this.profiles = profiles;
+        this.startupProfile = startupProfile;
+    }
+
+    public static PerformanceProfiles defaults() {
+        return new PerformanceProfiles(defaultProfiles(), LOWEST_LATENCY);
+    }
+
+    public static PerformanceProfiles load(Configuration configuration) {
+        Map<String, PerformanceProfile> profiles = new LinkedHashMap<>();
+        for (PerformanceProfile profile : defaultProfiles().values()) {
+            String prefix = PROFILE_PREFIX + profile.name() + ".";
+            profiles.put(profile.name(), new PerformanceProfile(
+                    profile.name(),
+                    configuration.getString(prefix + "waitStrategy", profile.waitStrategy()),
+                    configuration.getInt(prefix + "ringSize", profile.ringSize()),
+                    configuration.getInt(prefix + "flushConsolidation", profile.flushConsolidation()),
+                    configuration.getInt(prefix + "eventLoopThreads", profile.eventLoopThreads()),
+                    configuration.getString(prefix + "ingress", profile.ingress())));
+        }
+        return new PerformanceProfiles(profiles, configuration.getString(ACTIVE_PROFILE, LOWEST_LATENCY));
+    }
+
+    private static Map<String, PerformanceProfile> defaultProfiles() {
+        Map<String, PerformanceProfile> profiles = new LinkedHashMap<>();
+        profiles.put(LOWEST_LATENCY, new PerformanceProfile(LOWEST_LATENCY, PerformanceProfile.BUSY_SPIN, 256, 0, 3));
+        profiles.put(THROUGHPUT, new PerformanceProfile(THROUGHPUT, PerformanceProfile.YIELDING, 4096, 64, 3));
+        profiles.put(LOW_CPU, new PerformanceProfile(LOW_CPU, PerformanceProfile.BLOCKING, 256, 16, 1));
+        return profiles;
+    }
+
+    public PerformanceProfile startupProfile() {
+        return profiles.get(startupProfile);
+    }
+
+    // null for a name that is not configured
+    public PerformanceProfile find(String name) {
+        return profiles.get(name);
+    }
+
+    public PerformanceProfile get(String name) {
+        PerformanceProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Not known profile " + name);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,47 @@
+package com.transfer.core;
+
+import java.util.UUID;
+
+// Legs of a multi leg posting, allocated once with the ring slot and refilled for every posting.
+// Debits are negative amounts and credits positive, a posting is only applied when its legs net to zero.
+public class PostingLegs {
+
+    public static final int MAX_LEGS = 16;
+
+    private final UUID[] accounts = new UUID[MAX_LEGS];
+    private final long[] amounts = new long[MAX_LEGS];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    // false when the posting already has MAX_LEGS legs
+    public boolean add(UUID account, long amount) {
+        if (size == MAX_LEGS) {
+            return false;
+        }
+        accounts[size] = account;
+        amounts[size] = amount;
+        size++;
+        return true;
+    }
+
+    public void copyFrom(PostingLegs other) {
+        System.arraycopy(other.accounts, 0, accounts, 0, other.size);
+        System.arraycopy(other.amounts, 0, amounts, 0, other.size);
+        size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID account(int leg) {
+        return accounts[leg];
+    }
+
+    public long amount(int leg) {
+        return amounts[leg];
+    }
+}
@@ -0,0 +1,76 @@
+package com.transfer.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One sampled request, begun at channelRead0 and committed when the response flush completes.
+// Stage timestamps are System.nanoTime() values written by the netty thread (received, claimed, flushed)
+// and by the disruptor thread (handle start/end); the hand-offs through the ring and the event loop
+// task queue make them visible to whoever writes the next one.
+@Name("com.transfer.RequestTiming")
+@Label("Request Timing")
+@Category({"Transfer", "Request"})
+@Description("Per stage timing of a sampled request across netty and the disruptor")
+@StackTrace(false)
+public class RequestTimingEvent extends Event {
+
+    @Label("Route")
+    public String route;
+
+    @Label("Ring Sequence")
+    public long sequence;
+
+    @Label("Received")
+    @Description("System.nanoTime()")
+    public long receivedNanos;
+
+    @Label("Slot Claimed")
+    @Description("System.nanoTime()")
+    public long claimedNanos;
+
+    @Label("Handle Start")
+    @Description("System.nanoTime()")
+    public long handleStartNanos;
+
+    @Label("Handle End")
+    @Description("System.nanoTime()")
+    public long handleEndNanos;
+
+    @Label("Flushed")
+    @Description("System.nanoTime()")
+    public long flushedNanos;
+
+    @Label("Wait For Slot")
+    @Timespan(Timespan.NANOSECONDS)
+    public long waitForSlot;
+
+    @Label("Queued")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queued;
+
+    @Label("Handle")
+    @Timespan(Timespan.NANOSECONDS)
+    public long handle;
+
+    @Label("Write Back")
+    @Timespan(Timespan.NANOSECONDS)
+    public long writeBack;
+
+    public void flushed() {
+        flushedNanos = System.nanoTime();
+        if (claimedNanos != 0) {
+            waitForSlot = claimedNanos - receivedNanos;
+        }
+        if (handleStartNanos != 0) {
+            queued = handleStartNanos - claimedNanos;
+            handle = handleEndNanos - handleStartNanos;
+            writeBack = flushedNanos - handleEndNanos;
+        }
+        commit();
+    }
+}
@@ -0,0 +1,23 @@
+package com.transfer.core;
+
+// Expected business outcomes, handed to the rejection consumer instead of throwing on the consumer thread.
+// Constants are the only allocation, so rejecting a flood of bad requests costs the same as accepting them.
+public enum ResultCode {
+    MALFORMED_REQUEST("Request parameters are missing or not valid"),
+    INVALID_AMOUNT("Amount should not be less then 0"),
+    SAME_ACCOUNT("From and to accounts should be different"),
+    ACCOUNT_NOT_FOUND("Account not present"),
+    FROM_ACCOUNT_NOT_FOUND("From account not present"),
+    TO_ACCOUNT_NOT_FOUND("To account not present"),
+    HOLD_NOT_FOUND("Hold not present"),
+    INSUFFICIENT_FUNDS("Not enough money"),
+    UNSUPPORTED_OPERATION("Not supported operation"),
+    UNBALANCED_POSTING("Posting legs should net to zero"),
+    STORAGE_FULL("Account storage is full");
+
+    public final String message;
+
+    ResultCode(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,36 @@
+package com.transfer.core;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+
+// Disruptor fixes its wait strategy at construction, this one delegates so it can be replaced on a running ring.
+// The consumer picks up a new delegate on its next wait; if it is parked inside a blocking delegate while the switch
+// happens it is signalled here, and blocking delegates always use a timeout so a missed signal cannot park it forever.
+class SwitchableWaitStrategy implements WaitStrategy {
+
+    private volatile WaitStrategy delegate;
+
+    SwitchableWaitStrategy(WaitStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException, TimeoutException {
+        return delegate.waitFor(sequence, cursor, dependentSequence, barrier);
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        delegate.signalAllWhenBlocking();
+    }
+
+    void switchTo(WaitStrategy next) {
+        WaitStrategy previous = delegate;
+        delegate = next;
+        previous.signalAllWhenBlocking();
+    }
+}
@@ -0,0 +1,141 @@
+package com.transfer.core;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+// Bounded hot tier in front of the memory mapped cold file. Hot accounts live in fixed slots, a miss reads
+// through to the cold file and takes a slot chosen by CLOCK: the hand clears reference bits until it finds an
+// account untouched since its last pass, which is written back to the cold file if it changed and then evicted.
+// The cold file only holds accounts outside the hot tier, it spills memory for one run and is not persistence.
+public class TieredAccountStorage implements AccountStorage {
+
+    private static final int NO_SLOT = -1;
+
+    private final ColdAccountFile coldTier;
+    private final TObjectIntHashMap<UUID> hotSlots;
+    private final UUID[] accounts;
+    private final long[] balances;
+    private final boolean[] referenced;
+    private final boolean[] dirty;
+    private final int coldCapacity;
+    private long size;
+    private int used;
+    private int hand;
+
+    public TieredAccountStorage(int hotCapacity, File coldFile, int coldCapacity) {
+        if (hotCapacity <= 0) {
+            throw new IllegalArgumentException("Hot capacity should be greater then 0");
+        }
+        if (coldCapacity <= 0) {
+            throw new IllegalArgumentException("Cold capacity should be greater then 0");
+        }
+        this.coldCapacity = coldCapacity;
+        this.coldTier = new ColdAccountFile(coldFile, coldCapacity);
+        this.hotSlots = new TObjectIntHashMap<>(hotCapacity * 2, 0.5f, NO_SLOT);
+        this.accounts = new UUID[hotCapacity];
+        this.balances = new long[hotCapacity];
+        this.referenced = new boolean[hotCapacity];
+        this.dirty = new boolean[hotCapacity];
+    }
+
+    @Override
+    public long get(UUID account) {
+        int slot = hotSlots.get(account);
+        if (slot != NO_SLOT) {
+            referenced[slot] = true;
+            return balances[slot];
+        }
+        long balance = coldTier.get(account);
+        if (balance != NO_ACCOUNT) {
+            admit(account, balance, false);
+        }
+        return balance;
+    }
+
+    @Override
+    public long put(UUID account, long balance) {
+        int slot = hotSlots.get(account);
+        if (slot != NO_SLOT) {
+            long previous = balances[slot];
+            balances[slot] = balance;
+            referenced[slot] = true;
+            dirty[slot] = true;
+            return previous;
+        }
+        long previous = coldTier.get(account);
+        if (previous == NO_ACCOUNT) {
+            size++;
+        }
+        admit(account, balance, true);
+        return previous;
+    }
+
+    // accounts are never removed and any of them may be evicted to the cold file, so capacity is reserved there
+    // for every account up front and the cold file can not run out of slots under an eviction
+    @Override
+    public boolean isFull() {
+        return size >= coldCapacity;
+    }
+
+    // touches the cold file pages on the calling netty thread, so a miss on the consumer thread finds them resident
+    @Override
+    public void prefetch(UUID account) {
+        coldTier.touch(account);
+    }
+
+    // the cold copy of a hot account may be stale, so the cold walk skips whatever the hot tier holds
+    @Override
+    public void forEach(ObjLongConsumer<UUID> consumer) {
+        for (int slot = 0; slot < used; slot++) {
+            consumer.accept(accounts[slot], balances[slot]);
+        }
+        coldTier.forEach((account, balance) -> {
+            if (!hotSlots.containsKey(account)) {
+                consumer.accept(account, balance);
+            }
+        });
+    }
+
+    boolean isHot(UUID account) {
+        return hotSlots.containsKey(account);
+    }
+
+    int hotSize() {
+        return hotSlots.size();
+    }
+
+    long coldSize() {
+        return coldTier.size();
+    }
+
+    private void admit(UUID account, long balance, boolean changed) {
+        int slot = used < accounts.length ? used++ : evict();
+        accounts[slot] = account;
+        balances[slot] = balance;
+        referenced[slot] = true;
+        dirty[slot] = changed;
+        hotSlots.put(account, slot);
+    }
+
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % accounts.length;
+        }
+        int slot = hand;
+        hand = (hand + 1) % accounts.length;
+        if (dirty[slot]) {
+            coldTier.put(accounts[slot], balances[slot]);
+        }
+        hotSlots.remove(accounts[slot]);
+        return slot;
+    }
+
+    @Override
+    public void close() {
+        coldTier.close();
+    }
+}
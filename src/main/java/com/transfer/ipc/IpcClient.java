@@ -0,0 +1,95 @@
+package com.transfer.ipc;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.broadcast.BroadcastReceiver;
+import org.agrona.concurrent.broadcast.CopyBroadcastReceiver;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.UUID;
+
+// Sends transfers to an IpcIngress running on the same host and reads back the replies addressed to its client id.
+// Not thread safe, every thread needs its own instance and a client id no other live client uses.
+// A client that polls less often than a whole replies buffer is written gets lapped: the replies it missed are
+// gone, poll skips ahead to the latest one and lapped() counts it, so a caller still waiting on one times it out.
+public class IpcClient implements AutoCloseable {
+
+    private final int clientId;
+    private final MappedByteBuffer commandsFile;
+    private final MappedByteBuffer repliesFile;
+    private final ManyToOneRingBuffer commands;
+    private final BroadcastReceiver receiver;
+    private final CopyBroadcastReceiver replies;
+    private final UnsafeBuffer command = new UnsafeBuffer(new byte[IpcLayout.TRANSFER_LENGTH]);
+    private final MessageHandler replyHandler = this::onReply;
+    private IpcReplyHandler handler;
+    private int polled;
+    private long nextCorrelationId;
+
+    public IpcClient(File directory, int clientId) {
+        this.clientId = clientId;
+        this.commandsFile = IpcFiles.mapExisting(new File(directory, IpcLayout.COMMANDS_FILE), "ipc commands");
+        this.repliesFile = IpcFiles.mapExisting(new File(directory, IpcLayout.REPLIES_FILE), "ipc replies");
+        this.commands = new ManyToOneRingBuffer(new UnsafeBuffer(commandsFile));
+        // starts at the latest reply, so it has to exist before the first command is sent
+        this.receiver = new BroadcastReceiver(new UnsafeBuffer(repliesFile));
+        this.replies = new CopyBroadcastReceiver(receiver);
+    }
+
+    // correlation id of the command, or -1 when the commands buffer is full
+    public long transfer(UUID fromAccount, UUID toAccount, long amount) {
+        long correlationId = nextCorrelationId;
+        command.putLong(IpcLayout.CORRELATION_ID_OFFSET, correlationId);
+        command.putInt(IpcLayout.CLIENT_ID_OFFSET, clientId);
+        command.putLong(IpcLayout.FROM_MSB_OFFSET, fromAccount.getMostSignificantBits());
+        command.putLong(IpcLayout.FROM_LSB_OFFSET, fromAccount.getLeastSignificantBits());
+        command.putLong(IpcLayout.TO_MSB_OFFSET, toAccount.getMostSignificantBits());
+        command.putLong(IpcLayout.TO_LSB_OFFSET, toAccount.getLeastSignificantBits());
+        command.putLong(IpcLayout.AMOUNT_OFFSET, amount);
+        if (!commands.write(IpcLayout.TRANSFER_MSG_TYPE, command, 0, IpcLayout.TRANSFER_LENGTH)) {
+            return -1;
+        }
+        nextCorrelationId++;
+        return correlationId;
+    }
+
+    // hands the replies broadcast since the last poll that belong to this client to the handler, returns their count
+    public int poll(IpcReplyHandler handler) {
+        this.handler = handler;
+        this.polled = 0;
+        while (true) {
+            long lapped = receiver.lappedCount();
+            try {
+                if (replies.receive(replyHandler) == 0) {
+                    return polled;
+                }
+            } catch (IllegalStateException e) {
+                // the receiver has already moved to the latest reply, anything else is not a lap
+                if (receiver.lappedCount() == lapped) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // times this client fell a whole replies buffer behind and lost the replies in between
+    public long lapped() {
+        return receiver.lappedCount();
+    }
+
+    private void onReply(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+        if (msgTypeId == IpcLayout.REPLY_MSG_TYPE && buffer.getInt(index + IpcLayout.CLIENT_ID_OFFSET) == clientId) {
+            polled++;
+            handler.onReply(buffer.getLong(index + IpcLayout.CORRELATION_ID_OFFSET), buffer.getInt(index + IpcLayout.STATUS_OFFSET));
+        }
+    }
+
+    @Override
+    public void close() {
+        IpcFiles.unmap(commandsFile);
+        IpcFiles.unmap(repliesFile);
+    }
+}
@@ -0,0 +1,27 @@
+package com.transfer.ipc;
+
+import org.agrona.IoUtil;
+import org.agrona.UnsafeAccess;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+final class IpcFiles {
+
+    private IpcFiles() {
+    }
+
+    // zero filled, a file left over from a previous run must not look like pending commands
+    static MappedByteBuffer mapNew(File file, int length) {
+        return IoUtil.mapNewFile(file, length, true);
+    }
+
+    static MappedByteBuffer mapExisting(File file, String description) {
+        return IoUtil.mapExistingFile(file, description);
+    }
+
+    // IoUtil.unmap reaches into FileChannelImpl, which newer JDKs no longer open up
+    static void unmap(MappedByteBuffer mappedBuffer) {
+        UnsafeAccess.UNSAFE.invokeCleaner(mappedBuffer);
+    }
+}
@@ -0,0 +1,150 @@
+package com.transfer.ipc;
+
+import com.transfer.core.AccountEvent;
+import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.EventType;
+import com.transfer.core.PerformanceProfile;
+import com.transfer.core.ResultCode;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.broadcast.BroadcastBufferDescriptor;
+import org.agrona.concurrent.broadcast.BroadcastTransmitter;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Transfer commands from processes on the same host, skipping the TCP and HTTP round trip of NettyServer.
+// Clients write fixed layout commands into a memory mapped many to one ring buffer, a poller thread copies them into
+// ring slots and the consumer thread answers on a memory mapped broadcast buffer every client reads, each picking
+// out its own replies by client id. A client that falls a whole replies buffer behind loses replies.
+public class IpcIngress implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IpcIngress.class);
+    private static final int POLL_LIMIT = 64;
+    private static final int ACCOUNT_CACHE_SIZE = 4096;
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final AccountOperationsEventProcessor accountOperationsEventProcessor;
+    private final MappedByteBuffer commandsFile;
+    private final MappedByteBuffer repliesFile;
+    private final ManyToOneRingBuffer commands;
+    private final BroadcastTransmitter replies;
+    private final Thread poller;
+    private volatile boolean running = true;
+
+    // poller thread only, direct mapped so a busy account decodes to the same UUID instead of a new one per command
+    private final UUID[] accounts = new UUID[ACCOUNT_CACHE_SIZE];
+
+    // consumer thread only, the reply address travels in the event so the consumers are shared by every command
+    private final UnsafeBuffer reply = new UnsafeBuffer(new byte[IpcLayout.REPLY_LENGTH]);
+    private final BiConsumer<AccountEvent, String> resultConsumer = (event, result) -> reply(event, IpcLayout.STATUS_SUCCESS);
+    private final BiConsumer<AccountEvent, ResultCode> rejectionConsumer = (event, resultCode) -> reply(event, IpcLayout.status(resultCode));
+    private final BiConsumer<AccountEvent, Throwable> errorConsumer = (event, error) -> reply(event, IpcLayout.STATUS_ERROR);
+
+    // single writer each, close waits a bounded time for every received command to be answered before unmapping
+    private volatile long received;
+    private volatile long replied;
+
+    public IpcIngress(File directory, int commandsCapacity, int repliesCapacity,
+                      AccountOperationsEventProcessor accountOperationsEventProcessor, ThreadFactory threadFactory) {
+        this.accountOperationsEventProcessor = accountOperationsEventProcessor;
+        this.commandsFile = IpcFiles.mapNew(new File(directory, IpcLayout.COMMANDS_FILE), commandsCapacity + RingBufferDescriptor.TRAILER_LENGTH);
+        this.repliesFile = IpcFiles.mapNew(new File(directory, IpcLayout.REPLIES_FILE), repliesCapacity + BroadcastBufferDescriptor.TRAILER_LENGTH);
+        try {
+            this.commands = new ManyToOneRingBuffer(new UnsafeBuffer(commandsFile));
+            this.replies = new BroadcastTransmitter(new UnsafeBuffer(repliesFile));
+        } catch (RuntimeException e) {
+            IpcFiles.unmap(commandsFile);
+            IpcFiles.unmap(repliesFile);
+            throw e;
+        }
+        this.poller = threadFactory.newThread(this::poll);
+        this.poller.start();
+        LOGGER.info("Accepting ipc transfer commands in {}", directory);
+    }
+
+    // follows runtime profile switches, the poller idles the way the consumer thread waits
+    private void poll() {
+        MessageHandler handler = this::onCommand;
+        PerformanceProfile profile = accountOperationsEventProcessor.profile();
+        IdleStrategy idleStrategy = profile.newIdleStrategy();
+        while (running) {
+            idleStrategy.idle(commands.read(handler, POLL_LIMIT));
+            if (profile != accountOperationsEventProcessor.profile()) {
+                profile = accountOperationsEventProcessor.profile();
+                idleStrategy = profile.newIdleStrategy();
+            }
+        }
+    }
+
+    private void onCommand(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+        if (msgTypeId != IpcLayout.TRANSFER_MSG_TYPE || length < IpcLayout.TRANSFER_LENGTH) {
+            LOGGER.warn("Dropping ipc command of type {} and length {}", msgTypeId, length);
+            return;
+        }
+        AccountEvent event = accountOperationsEventProcessor.nextEvent();
+        event.eventType = EventType.TRANSFER;
+        event.ctx = null;
+        event.timing = null;
+        event.clientId = buffer.getInt(index + IpcLayout.CLIENT_ID_OFFSET);
+        event.correlationId = buffer.getLong(index + IpcLayout.CORRELATION_ID_OFFSET);
+        event.accountFrom = account(buffer.getLong(index + IpcLayout.FROM_MSB_OFFSET), buffer.getLong(index + IpcLayout.FROM_LSB_OFFSET));
+        event.accountTo = account(buffer.getLong(index + IpcLayout.TO_MSB_OFFSET), buffer.getLong(index + IpcLayout.TO_LSB_OFFSET));
+        event.amount = buffer.getLong(index + IpcLayout.AMOUNT_OFFSET);
+        event.resultConsumer = resultConsumer;
+        event.rejectionConsumer = rejectionConsumer;
+        event.errorConsumer = errorConsumer;
+        received++;
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private UUID account(long mostSigBits, long leastSigBits) {
+        long hash = (mostSigBits ^ leastSigBits) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash >>> 32) & (ACCOUNT_CACHE_SIZE - 1);
+        UUID account = accounts[slot];
+        if (account == null || account.getMostSignificantBits() != mostSigBits || account.getLeastSignificantBits() != leastSigBits) {
+            account = new UUID(mostSigBits, leastSigBits);
+            accounts[slot] = account;
+        }
+        return account;
+    }
+
+    private void reply(AccountEvent event, int status) {
+        reply.putLong(IpcLayout.CORRELATION_ID_OFFSET, event.correlationId);
+        reply.putInt(IpcLayout.CLIENT_ID_OFFSET, event.clientId);
+        reply.putInt(IpcLayout.STATUS_OFFSET, status);
+        replies.transmit(IpcLayout.REPLY_MSG_TYPE, reply, 0, IpcLayout.REPLY_LENGTH);
+        replied++;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IpcFiles.unmap(commandsFile);
+        // a stopped consumer thread never answers, and unmapping under a late reply would crash the process
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        while (replied < received) {
+            if (System.nanoTime() - deadline > 0) {
+                LOGGER.warn("Stopping with {} ipc commands unanswered, leaving the replies file mapped", received - replied);
+                return;
+            }
+            Thread.yield();
+        }
+        IpcFiles.unmap(repliesFile);
+    }
+}
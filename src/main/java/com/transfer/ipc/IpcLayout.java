@@ -0,0 +1,106 @@
+package com.transfer.ipc;
+
+import com.transfer.core.ResultCode;
+
+// Fixed layout of the messages exchanged through the shared memory files, offsets are from the message start.
+public final class IpcLayout {
+
+    public static final String COMMANDS_FILE = "commands";
+    public static final String REPLIES_FILE = "replies";
+
+    public static final int TRANSFER_MSG_TYPE = 1;
+    public static final int REPLY_MSG_TYPE = 1;
+
+    public static final int CORRELATION_ID_OFFSET = 0;
+    public static final int CLIENT_ID_OFFSET = 8;
+
+    // transfer command
+    public static final int FROM_MSB_OFFSET = 16;
+    public static final int FROM_LSB_OFFSET = 24;
+    public static final int TO_MSB_OFFSET = 32;
+    public static final int TO_LSB_OFFSET = 40;
+    public static final int AMOUNT_OFFSET = 48;
+    public static final int TRANSFER_LENGTH = 56;
+
+    // reply, status is STATUS_SUCCESS, STATUS_ERROR or one of the rejection statuses below
+    public static final int STATUS_OFFSET = 12;
+    public static final int REPLY_LENGTH = 16;
+
+    public static final int STATUS_SUCCESS = 0;
+    public static final int STATUS_ERROR = -1;
+
+    // part of the wire format, fixed here rather than taken from the enum order
+    public static final int STATUS_MALFORMED_REQUEST = 1;
+    public static final int STATUS_INVALID_AMOUNT = 2;
+    public static final int STATUS_SAME_ACCOUNT = 3;
+    public static final int STATUS_ACCOUNT_NOT_FOUND = 4;
+    public static final int STATUS_FROM_ACCOUNT_NOT_FOUND = 5;
+    public static final int STATUS_TO_ACCOUNT_NOT_FOUND = 6;
+    public static final int STATUS_HOLD_NOT_FOUND = 7;
+    public static final int STATUS_INSUFFICIENT_FUNDS = 8;
+    public static final int STATUS_UNSUPPORTED_OPERATION = 9;
+    public static final int STATUS_UNBALANCED_POSTING = 10;
+    public static final int STATUS_STORAGE_FULL = 11;
+
+    private IpcLayout() {
+    }
+
+    public static int status(ResultCode resultCode) {
+        switch (resultCode) {
+            case MALFORMED_REQUEST:
+                return STATUS_MALFORMED_REQUEST;
+            case INVALID_AMOUNT:
+                return STATUS_INVALID_AMOUNT;
+            case SAME_ACCOUNT:
+                return STATUS_SAME_ACCOUNT;
+            case ACCOUNT_NOT_FOUND:
+                return STATUS_ACCOUNT_NOT_FOUND;
+            case FROM_ACCOUNT_NOT_FOUND:
+                return STATUS_FROM_ACCOUNT_NOT_FOUND;
+            case TO_ACCOUNT_NOT_FOUND:
+                return STATUS_TO_ACCOUNT_NOT_FOUND;
+            case HOLD_NOT_FOUND:
+                return STATUS_HOLD_NOT_FOUND;
+            case INSUFFICIENT_FUNDS:
+                return STATUS_INSUFFICIENT_FUNDS;
+            case UNSUPPORTED_OPERATION:
+                return STATUS_UNSUPPORTED_OPERATION;
+            case UNBALANCED_POSTING:
+                return STATUS_UNBALANCED_POSTING;
+            case STORAGE_FULL:
+                return STATUS_STORAGE_FULL;
+            default:
+                return STATUS_ERROR;
+        }
+    }
+
+    // null for success, error or a status this side does not know
+    public static ResultCode rejection(int status) {
+        switch (status) {
+            case STATUS_MALFORMED_REQUEST:
+                return ResultCode.MALFORMED_REQUEST;
+            case STATUS_INVALID_AMOUNT:
+                return ResultCode.INVALID_AMOUNT;
+            case STATUS_SAME_ACCOUNT:
+                return ResultCode.SAME_ACCOUNT;
+            case STATUS_ACCOUNT_NOT_FOUND:
+                return ResultCode.ACCOUNT_NOT_FOUND;
+            case STATUS_FROM_ACCOUNT_NOT_FOUND:
+                return ResultCode.FROM_ACCOUNT_NOT_FOUND;
+            case STATUS_TO_ACCOUNT_NOT_FOUND:
+                return ResultCode.TO_ACCOUNT_NOT_FOUND;
+            case STATUS_HOLD_NOT_FOUND:
+                return ResultCode.HOLD_NOT_FOUND;
+            case STATUS_INSUFFICIENT_FUNDS:
+                return ResultCode.INSUFFICIENT_FUNDS;
+            case STATUS_UNSUPPORTED_OPERATION:
+                return ResultCode.UNSUPPORTED_OPERATION;
+            case STATUS_UNBALANCED_POSTING:
+                return ResultCode.UNBALANCED_POSTING;
+            case STATUS_STORAGE_FULL:
+                return ResultCode.STORAGE_FULL;
+            default:
+                return null;
+        }
+    }
+}
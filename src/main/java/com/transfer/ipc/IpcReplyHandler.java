@@ -0,0 +1,7 @@
+package com.transfer.ipc;
+
+@FunctionalInterface
+public interface IpcReplyHandler {
+
+    void onReply(long correlationId, int status);
+}
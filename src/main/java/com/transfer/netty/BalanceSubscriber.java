@@ -0,0 +1,60 @@
+package com.transfer.netty;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One per websocket channel. An update overwrites the pending balance of its account, so a subscriber that can not
+// keep up only ever receives the latest balance, and at most one flush task per channel waits on its event loop.
+class BalanceSubscriber {
+
+    final Set<UUID> accounts = ConcurrentHashMap.newKeySet();
+
+    private final Channel channel;
+    private final ConcurrentHashMap<UUID, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable flushTask = this::flush;
+
+    BalanceSubscriber(Channel channel) {
+        this.channel = channel;
+    }
+
+    void update(UUID account, long balance) {
+        pending.put(account, balance);
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            channel.eventLoop().execute(flushTask);
+        }
+    }
+
+    // event loop only, stops at the high water mark and resumes once the channel is writable again
+    void flush() {
+        scheduled.set(false);
+        if (!channel.isActive()) {
+            return;
+        }
+        boolean written = false;
+        for (Map.Entry<UUID, Long> entry : pending.entrySet()) {
+            if (!channel.isWritable()) {
+                break;
+            }
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                channel.write(balanceMessage(entry.getKey(), entry.getValue()));
+                written = true;
+            }
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    private TextWebSocketFrame balanceMessage(UUID account, long balance) {
+        String message = String.format("{\"account\":\"%s\", \"amount\":%d }", account, balance);
+        return new TextWebSocketFrame(ByteBufUtil.writeUtf8(channel.alloc(), message));
+    }
+}
@@ -0,0 +1,112 @@
+package com.transfer.netty;
+
+import com.transfer.core.ResultCode;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Text frames on the balances websocket, {"subscribe":["<account>", ...]} and {"unsubscribe":["<account>", ...]},
+// each acknowledged with the number of accounts the channel watches. Pushes only cover changes made after the
+// subscription, clients take the starting balance from /account/info once subscribed.
+class BalanceSubscriptionHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+
+    static final String BALANCES_WEBSOCKET_PATH = "/ws/balances";
+    static final String SUBSCRIBE_PARAMETER = "subscribe";
+    static final String UNSUBSCRIBE_PARAMETER = "unsubscribe";
+    static final String SUBSCRIBED_PARAMETER = "subscribed";
+
+    private static final int MAX_SUBSCRIPTIONS = 1024;
+
+    private final BalanceSubscriptions subscriptions;
+    private BalanceSubscriber subscriber;
+
+    BalanceSubscriptionHandler(BalanceSubscriptions subscriptions) {
+        this.subscriptions = subscriptions;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
+        Map message = parseMessage(frame.text());
+        List<UUID> subscribe = message == null ? null : accounts(message, SUBSCRIBE_PARAMETER);
+        List<UUID> unsubscribe = message == null ? null : accounts(message, UNSUBSCRIBE_PARAMETER);
+        if (subscribe == null || unsubscribe == null) {
+            ctx.writeAndFlush(new TextWebSocketFrame(NettyHttpUtil.rejectionBody(ResultCode.MALFORMED_REQUEST)));
+            return;
+        }
+        if (subscriber == null) {
+            subscriber = new BalanceSubscriber(ctx.channel());
+        }
+        if (subscriber.accounts.size() + subscribe.size() > MAX_SUBSCRIPTIONS) {
+            ctx.writeAndFlush(new TextWebSocketFrame(NettyHttpUtil.rejectionBody(ResultCode.MALFORMED_REQUEST)));
+            return;
+        }
+        for (UUID account : unsubscribe) {
+            subscriptions.unsubscribe(account, subscriber);
+        }
+        for (UUID account : subscribe) {
+            subscriptions.subscribe(account, subscriber);
+        }
+        ctx.writeAndFlush(new TextWebSocketFrame(String.format("{\"%s\":%d }", SUBSCRIBED_PARAMETER, subscriber.accounts.size())));
+    }
+
+    // writer idle pings the client, its pong counts as a read; reader idle goes on to close the channel
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.WRITER_IDLE) {
+            ctx.writeAndFlush(new PingWebSocketFrame());
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (subscriber != null && ctx.channel().isWritable()) {
+            subscriber.flush();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (subscriber != null) {
+            subscriptions.unsubscribeAll(subscriber);
+        }
+        super.channelInactive(ctx);
+    }
+
+    private static Map parseMessage(String text) {
+        try {
+            return NettyHttpUtil.extractPostRequestBody(text);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // a missing list is empty, a list with any entry that is not an account rejects the whole message
+    private static List<UUID> accounts(Map message, String name) {
+        Object value = message.get(name);
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<UUID> accounts = new ArrayList<>(((List) value).size());
+        for (Object account : (List) value) {
+            if (!(account instanceof String) || !HttpRouter.isAccount((String) account, 0, ((String) account).length())) {
+                return null;
+            }
+            accounts.add(UUID.fromString((String) account));
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,102 @@
+package com.transfer.netty;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.transfer.core.BalanceListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// Fans balance changes out to websocket subscribers. The disruptor thread only records the latest balance of a
+// watched account and wakes the publisher thread, which looks up the subscribers and hands each of them the update.
+// Changes to an account nobody watches cost a single map lookup.
+public class BalanceSubscriptions implements BalanceListener, AutoCloseable {
+
+    private final ConcurrentHashMap<UUID, Set<BalanceSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Long> changed = new ConcurrentHashMap<>();
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private final Thread publisher;
+    private volatile boolean running = true;
+
+    public BalanceSubscriptions() {
+        this(new ThreadFactoryBuilder().setNameFormat("balance.publisher-%d").setDaemon(true).build());
+    }
+
+    public BalanceSubscriptions(ThreadFactory threadFactory) {
+        this.publisher = threadFactory.newThread(this::publish);
+        this.publisher.start();
+    }
+
+    @Override
+    public void balanceChanged(UUID account, long balance) {
+        if (!subscribers.containsKey(account)) {
+            return;
+        }
+        changed.put(account, balance);
+        if (!signalled.get() && !signalled.getAndSet(true)) {
+            LockSupport.unpark(publisher);
+        }
+    }
+
+    void subscribe(UUID account, BalanceSubscriber subscriber) {
+        subscribers.compute(account, (key, accountSubscribers) -> {
+            if (accountSubscribers == null) {
+                accountSubscribers = ConcurrentHashMap.newKeySet();
+            }
+            accountSubscribers.add(subscriber);
+            return accountSubscribers;
+        });
+        subscriber.accounts.add(account);
+    }
+
+    void unsubscribe(UUID account, BalanceSubscriber subscriber) {
+        subscriber.accounts.remove(account);
+        subscribers.computeIfPresent(account, (key, accountSubscribers) -> {
+            accountSubscribers.remove(subscriber);
+            return accountSubscribers.isEmpty() ? null : accountSubscribers;
+        });
+    }
+
+    void unsubscribeAll(BalanceSubscriber subscriber) {
+        for (UUID account : subscriber.accounts) {
+            unsubscribe(account, subscriber);
+        }
+    }
+
+    int watchedAccounts() {
+        return subscribers.size();
+    }
+
+    // the signal is cleared before the drain, a change recorded during the drain keeps the publisher from parking
+    private void publish() {
+        while (running) {
+            signalled.set(false);
+            for (Map.Entry<UUID, Long> entry : changed.entrySet()) {
+                UUID account = entry.getKey();
+                Long balance = entry.getValue();
+                if (!changed.remove(account, balance)) {
+                    continue;
+                }
+                Set<BalanceSubscriber> accountSubscribers = subscribers.get(account);
+                if (accountSubscribers != null) {
+                    for (BalanceSubscriber subscriber : accountSubscribers) {
+                        subscriber.update(account, balance);
+                    }
+                }
+            }
+            if (!signalled.get()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(publisher);
+    }
+}
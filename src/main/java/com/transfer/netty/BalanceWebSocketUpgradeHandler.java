@@ -0,0 +1,48 @@
+package com.transfer.netty;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+
+// The websocket handshake handler assumes every inbound message is a FullHttpRequest, which does not hold once
+// a connection switched to h2. The websocket handlers are therefore only installed on the HTTP/1.1 connection
+// that actually asks for the balances path, every other message passes through untouched.
+// A subscription can stay quiet far longer than an HTTP connection may idle, so the upgrade swaps the idle handler
+// for one that pings after PING_INTERVAL_SECONDS without writes and closes after three intervals without reads.
+@ChannelHandler.Sharable
+class BalanceWebSocketUpgradeHandler extends ChannelInboundHandlerAdapter {
+
+    static final int PING_INTERVAL_SECONDS = 30;
+    private static final int MAX_FRAME_PAYLOAD_LENGTH = 65536;
+
+    private final BalanceSubscriptions balanceSubscriptions;
+
+    BalanceWebSocketUpgradeHandler(BalanceSubscriptions balanceSubscriptions) {
+        this.balanceSubscriptions = balanceSubscriptions;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof FullHttpRequest && isBalancesPath(((FullHttpRequest) msg).uri())) {
+            // starts with, the handshake handler would otherwise refuse a query string the path check accepted
+            WebSocketServerProtocolHandler protocolHandler = new WebSocketServerProtocolHandler(
+                    BalanceSubscriptionHandler.BALANCES_WEBSOCKET_PATH, null, false, MAX_FRAME_PAYLOAD_LENGTH, false, true);
+            if (ctx.pipeline().get(NettyServer.IDLE_STATE_HANDLER) != null) {
+                ctx.pipeline().replace(NettyServer.IDLE_STATE_HANDLER, NettyServer.IDLE_STATE_HANDLER,
+                        new IdleStateHandler(3 * PING_INTERVAL_SECONDS, PING_INTERVAL_SECONDS, 0));
+            }
+            ctx.pipeline().addAfter(ctx.name(), null, protocolHandler);
+            ctx.pipeline().addAfter(ctx.pipeline().context(protocolHandler).name(), null, new BalanceSubscriptionHandler(balanceSubscriptions));
+            ctx.pipeline().remove(this);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    static boolean isBalancesPath(String uri) {
+        String path = BalanceSubscriptionHandler.BALANCES_WEBSOCKET_PATH;
+        return uri.startsWith(path) && (uri.length() == path.length() || uri.charAt(path.length()) == '?');
+    }
+}
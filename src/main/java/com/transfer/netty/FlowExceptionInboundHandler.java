@@ -15,6 +15,7 @@ public class FlowExceptionInboundHandler extends ChannelDuplexHandler {
     public FlowExceptionInboundHandler() {
     }
 
+    // client input is validated where it is parsed and rejected with a result code there, anything reaching this is a bug
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         LOGGER.error("Sending fail response", cause);
         NettyHttpUtil.send500InternalServerError(ctx, cause);
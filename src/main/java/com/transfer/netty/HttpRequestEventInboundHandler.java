@@ -3,24 +3,27 @@ package com.transfer.netty;
 
 import com.transfer.core.AccountEvent;
 import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.BalanceIndex;
 import com.transfer.core.EventType;
+import com.transfer.core.PerformanceProfile;
+import com.transfer.core.PerformanceProfiles;
+import com.transfer.core.PostingLegs;
+import com.transfer.core.RequestTimingEvent;
+import com.transfer.core.ResultCode;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.FastThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.*;
 
 import static com.transfer.netty.NettyHttpUtil.*;
-import static io.netty.handler.codec.http.HttpMethod.GET;
-import static io.netty.handler.codec.http.HttpMethod.POST;
 
 @ChannelHandler.Sharable
 public class HttpRequestEventInboundHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
@@ -30,106 +33,475 @@ public class HttpRequestEventInboundHandler extends SimpleChannelInboundHandler<
     static final String ACCOUNT_CREATE_REQUEST = "/account/create";
     static final String ACCOUNT_INFO_REQUEST = "/account/info";
     static final String TRANSFER_REQUEST = "/account/transfer";
+    static final String HOLD_REQUEST = "/account/hold";
+    static final String CAPTURE_REQUEST = "/account/capture";
+    static final String RELEASE_REQUEST = "/account/release";
+    static final String POSTING_REQUEST = "/account/posting";
+    static final String PROFILE_REQUEST = "/admin/profile";
+    static final String TOP_BALANCES_REQUEST = "/accounts/top";
+    static final String BALANCE_RANGE_REQUEST = "/accounts/range";
+    static final String LEDGER_DIGEST_REQUEST = "/ledger/digest";
 
     static final String ACCOUNT_REQUEST_PARAMETER = "account";
     static final String ACCOUNT_FROM_REQUEST_PARAMETER = "fromAccount";
     static final String ACCOUNT_TO_REQUEST_PARAMETER = "toAccount";
     static final String AMOUNT_REQUEST_PARAMETER = "amount";
+    static final String HOLD_REQUEST_PARAMETER = "hold";
+    static final String TIMEOUT_REQUEST_PARAMETER = "timeout";
+    static final String LEGS_REQUEST_PARAMETER = "legs";
+    static final String PROFILE_REQUEST_PARAMETER = "profile";
+    static final String LIMIT_REQUEST_PARAMETER = "limit";
+    static final String FROM_REQUEST_PARAMETER = "from";
+    static final String TO_REQUEST_PARAMETER = "to";
 
+    private static final int DEFAULT_QUERY_LIMIT = 100;
+    private static final int MAX_QUERY_LIMIT = 10_000;
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+
+    private static final FastThreadLocal<RouteMatch> ROUTE_MATCH = new FastThreadLocal<>() {
+        @Override
+        protected RouteMatch initialValue() {
+            return new RouteMatch();
+        }
+    };
+
+    // legs are parsed here first and copied into the slot, so a malformed posting never claims one
+    private static final FastThreadLocal<PostingLegs> POSTING_LEGS = new FastThreadLocal<>() {
+        @Override
+        protected PostingLegs initialValue() {
+            return new PostingLegs();
+        }
+    };
+
+    private final HttpRouter router = new HttpRouter();
     private final AccountOperationsEventProcessor accountOperationsEventProcessor;
+    private final RateLimiters rateLimiters;
+    private final PerformanceProfiles performanceProfiles;
+    private final RequestTimingSampler requestTimingSampler;
 
     public HttpRequestEventInboundHandler(AccountOperationsEventProcessor accountOperationsEventProcessor) {
+        this(accountOperationsEventProcessor, RateLimiters.disabled());
+    }
+
+    public HttpRequestEventInboundHandler(AccountOperationsEventProcessor accountOperationsEventProcessor, RateLimiters rateLimiters) {
+        this(accountOperationsEventProcessor, rateLimiters, PerformanceProfiles.defaults(), RequestTimingSampler.disabled());
+    }
+
+    public HttpRequestEventInboundHandler(AccountOperationsEventProcessor accountOperationsEventProcessor,
+                                          RateLimiters rateLimiters,
+                                          PerformanceProfiles performanceProfiles,
+                                          RequestTimingSampler requestTimingSampler) {
         super(true);
         this.accountOperationsEventProcessor = accountOperationsEventProcessor;
+        this.rateLimiters = rateLimiters;
+        this.performanceProfiles = performanceProfiles;
+        this.requestTimingSampler = requestTimingSampler;
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext context, FullHttpRequest message) throws Exception {
-        HttpMethod httpMethod = message.method();
-        var decodedUri = URLDecoder.decode(message.uri(), StandardCharsets.UTF_8);
-        QueryStringDecoder queryStringDecoder = new QueryStringDecoder(decodedUri, true);
-        String uri = queryStringDecoder.path();
-
-        if (httpMethod == POST) {
-            String payload = message.content().toString(CharsetUtil.UTF_8);
-            handlePost(
-                    context,
-                    payload,
-                    uri);
-        } else if (httpMethod == GET) {
-            Map<String, List<String>> parameters = queryStringDecoder.parameters();
-            handleGet(
-                    context,
-                    parameters,
-                    uri);
-        }
-    }
-
-    private void handlePost(ChannelHandlerContext ctx,
-                            String payload,
-                            String uri) throws Exception {
+        RequestTimingEvent timing = requestTimingSampler.sample();
+        if (!tryAcquireClient(context, message)) {
+            send429TooManyRequests(context);
+            return;
+        }
+
+        if (message.decoderResult().isFailure()) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+
+        RouteMatch match = ROUTE_MATCH.get();
+        router.route(message.method(), message.uri(), match);
+        if (timing != null) {
+            timing.route = match.route.name();
+            context.channel().attr(RequestTimingOutboundHandler.REQUEST_TIMING).set(timing);
+        }
+
+        if (match.malformed) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+
         AccountEvent event;
-        switch (uri) {
-            case TRANSFER_REQUEST:
-                event = accountOperationsEventProcessor.nextEvent();
-                setupTransferEvent(event, payload, ctx);
+        switch (match.route) {
+            case TRANSFER:
+                transfer(context, parseBody(message), timing);
+                break;
+            case ACCOUNT_CREATE:
+                createAccount(context, parseBody(message), timing);
+                break;
+            case HOLD:
+                hold(context, parseBody(message), timing);
+                break;
+            case CAPTURE:
+                capture(context, parseBody(message), timing);
+                break;
+            case RELEASE:
+                release(context, parseBody(message), timing);
+                break;
+            case POSTING:
+                posting(context, parseBody(message), timing);
+                break;
+            case PROFILE_SWITCH:
+                if (!isLoopback(context)) {
+                    send403Forbidden(context);
+                    break;
+                }
+                Map parameters = parseBody(message);
+                Object profileName = parameters == null ? null : parameters.get(PROFILE_REQUEST_PARAMETER);
+                PerformanceProfile profile = profileName instanceof String ? performanceProfiles.find((String) profileName) : null;
+                if (profile == null) {
+                    sendRejection(context, ResultCode.MALFORMED_REQUEST);
+                    break;
+                }
+                accountOperationsEventProcessor.switchProfile(profile);
+                send200Ok(context, profileResponse());
+                break;
+            case ACCOUNT_INFO:
+                if (!match.hasAccount) {
+                    sendRejection(context, ResultCode.MALFORMED_REQUEST);
+                    break;
+                }
+                UUID account = match.account();
+                accountOperationsEventProcessor.prefetch(account);
+                event = nextEvent(timing);
+                setupInfoEvent(event, account, context);
                 accountOperationsEventProcessor.publishEvent(event);
                 break;
-            case ACCOUNT_CREATE_REQUEST:
-                event = accountOperationsEventProcessor.nextEvent();
-                setupCreateEvent(event, payload, ctx);
+            case PROFILE_INFO:
+                if (!isLoopback(context)) {
+                    send403Forbidden(context);
+                    break;
+                }
+                send200Ok(context, profileResponse());
+                break;
+            case LEDGER_DIGEST:
+                event = nextEvent(timing);
+                setupDigestEvent(event, context);
                 accountOperationsEventProcessor.publishEvent(event);
                 break;
+            case TOP_BALANCES:
+                if (!isValidLimit(match)) {
+                    sendRejection(context, ResultCode.MALFORMED_REQUEST);
+                    break;
+                }
+                send200Ok(context, balancesResponse(accountOperationsEventProcessor.balanceIndex().top((int) match.limit(DEFAULT_QUERY_LIMIT))));
+                break;
+            case BALANCE_RANGE:
+                if (!isValidLimit(match)) {
+                    sendRejection(context, ResultCode.MALFORMED_REQUEST);
+                    break;
+                }
+                send200Ok(context, balancesResponse(accountOperationsEventProcessor.balanceIndex().range(
+                        match.from(0),
+                        match.to(Long.MAX_VALUE),
+                        (int) match.limit(DEFAULT_QUERY_LIMIT))));
+                break;
             default:
-                LOGGER.warn("Not valid operation: {}", uri);
-                send404NotFound(ctx);
+                LOGGER.warn("Not valid operation: {} {}", message.method(), message.uri());
+                send404NotFound(context);
                 break;
         }
     }
 
-    private void handleGet(ChannelHandlerContext ctx,
-                           Map<String, List<String>> parameters,
-                           String uri) throws Exception {
+    // every parameter is parsed and checked before a ring slot is claimed, a claimed slot has to be published
+    private void transfer(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        UUID fromAccount = accountParameter(parameters, ACCOUNT_FROM_REQUEST_PARAMETER);
+        UUID toAccount = accountParameter(parameters, ACCOUNT_TO_REQUEST_PARAMETER);
+        Long amount = longParameter(parameters, AMOUNT_REQUEST_PARAMETER);
+        if (fromAccount == null || toAccount == null || amount == null) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        if (!tryAcquireSourceAccount(fromAccount)) {
+            send429TooManyRequests(context);
+            return;
+        }
+        accountOperationsEventProcessor.prefetch(fromAccount);
+        accountOperationsEventProcessor.prefetch(toAccount);
+        AccountEvent event = nextEvent(timing);
+        setupTransferEvent(event, fromAccount, toAccount, amount, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
 
-        AccountEvent event;
-        switch (uri) {
-            case ACCOUNT_INFO_REQUEST:
-                event = accountOperationsEventProcessor.nextEvent();
-                setupInfoEvent(event, extractGetRequestParameter(parameters, ACCOUNT_REQUEST_PARAMETER), ctx);
-                accountOperationsEventProcessor.publishEvent(event);
-                break;
-            default:
-                LOGGER.warn("Not valid operation: {}", uri);
-                send404NotFound(ctx);
-                break;
+    private void createAccount(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        Long amount = longParameter(parameters, AMOUNT_REQUEST_PARAMETER);
+        if (amount == null) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        AccountEvent event = nextEvent(timing);
+        setupCreateEvent(event, amount, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private void hold(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        UUID account = accountParameter(parameters, ACCOUNT_REQUEST_PARAMETER);
+        Long amount = longParameter(parameters, AMOUNT_REQUEST_PARAMETER);
+        if (account == null || amount == null) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        // a missing timeout keeps the default expiry, an explicit one has to be a positive number of milliseconds
+        Long timeout = longParameter(parameters, TIMEOUT_REQUEST_PARAMETER);
+        if (parameters.containsKey(TIMEOUT_REQUEST_PARAMETER) && (timeout == null || timeout <= 0)) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        if (!tryAcquireSourceAccount(account)) {
+            send429TooManyRequests(context);
+            return;
+        }
+        accountOperationsEventProcessor.prefetch(account);
+        AccountEvent event = nextEvent(timing);
+        setupHoldEvent(event, account, amount, timeout == null ? 0 : timeout, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private void capture(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        Long holdId = longParameter(parameters, HOLD_REQUEST_PARAMETER);
+        UUID toAccount = accountParameter(parameters, ACCOUNT_TO_REQUEST_PARAMETER);
+        if (holdId == null || toAccount == null) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        accountOperationsEventProcessor.prefetch(toAccount);
+        AccountEvent event = nextEvent(timing);
+        setupCaptureEvent(event, holdId, toAccount, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private void release(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        Long holdId = longParameter(parameters, HOLD_REQUEST_PARAMETER);
+        if (holdId == null) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        AccountEvent event = nextEvent(timing);
+        setupReleaseEvent(event, holdId, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private void posting(ChannelHandlerContext context, Map parameters, RequestTimingEvent timing) {
+        PostingLegs legs = POSTING_LEGS.get();
+        if (!parseLegs(parameters, legs)) {
+            sendRejection(context, ResultCode.MALFORMED_REQUEST);
+            return;
+        }
+        for (int leg = 0; leg < legs.size(); leg++) {
+            if (legs.amount(leg) < 0 && !tryAcquireSourceAccount(legs.account(leg))) {
+                releaseSourceAccounts(legs, leg);
+                send429TooManyRequests(context);
+                return;
+            }
+        }
+        for (int leg = 0; leg < legs.size(); leg++) {
+            accountOperationsEventProcessor.prefetch(legs.account(leg));
+        }
+        AccountEvent event = nextEvent(timing);
+        setupPostingEvent(event, legs, context);
+        accountOperationsEventProcessor.publishEvent(event);
+    }
+
+    private static boolean parseLegs(Map parameters, PostingLegs legs) {
+        legs.clear();
+        Object value = parameters == null ? null : parameters.get(LEGS_REQUEST_PARAMETER);
+        if (!(value instanceof List)) {
+            return false;
         }
+        for (Object leg : (List) value) {
+            if (!(leg instanceof Map)) {
+                return false;
+            }
+            UUID account = accountParameter((Map) leg, ACCOUNT_REQUEST_PARAMETER);
+            Long amount = longParameter((Map) leg, AMOUNT_REQUEST_PARAMETER);
+            if (account == null || amount == null || !legs.add(account, amount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map parseBody(FullHttpRequest message) {
+        if (!message.content().isReadable()) {
+            return null;
+        }
+        try {
+            return extractPostRequestBody(message.content().toString(CharsetUtil.UTF_8));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static UUID accountParameter(Map parameters, String name) {
+        Object value = parameters == null ? null : parameters.get(name);
+        if (!(value instanceof String) || !HttpRouter.isAccount((String) value, 0, ((String) value).length())) {
+            return null;
+        }
+        return UUID.fromString((String) value);
+    }
+
+    private static Long longParameter(Map parameters, String name) {
+        Object value = parameters == null ? null : parameters.get(name);
+        return value instanceof Long ? (Long) value : null;
+    }
+
+    private AccountEvent nextEvent(RequestTimingEvent timing) {
+        AccountEvent event = accountOperationsEventProcessor.nextEvent();
+        event.timing = timing;
+        if (timing != null) {
+            timing.claimedNanos = System.nanoTime();
+        }
+        return event;
+    }
+
+    private static boolean isValidLimit(RouteMatch match) {
+        long limit = match.limit(DEFAULT_QUERY_LIMIT);
+        return limit >= 1 && limit <= MAX_QUERY_LIMIT;
+    }
+
+    // balance queries are served from the index on the netty thread and never take a ring slot
+    private static String balancesResponse(List<BalanceIndex.Entry> entries) {
+        StringBuilder response = new StringBuilder(32 + entries.size() * 64).append("{\"accounts\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            BalanceIndex.Entry entry = entries.get(i);
+            if (i > 0) {
+                response.append(',');
+            }
+            response.append("{\"account\":\"").append(entry.account).append("\", \"amount\":").append(entry.balance).append('}');
+        }
+        return response.append("] }").toString();
+    }
+
+    private String profileResponse() {
+        PerformanceProfile profile = accountOperationsEventProcessor.profile();
+        return String.format("{\"profile\":\"%s\", \"waitStrategy\":\"%s\" }", profile.name(), profile.waitStrategy());
+    }
+
+    // admin routes are only served to clients on the same host
+    private static boolean isLoopback(ChannelHandlerContext ctx) {
+        SocketAddress remoteAddress = ctx.channel().remoteAddress();
+        return remoteAddress instanceof InetSocketAddress
+                && ((InetSocketAddress) remoteAddress).getAddress() != null
+                && ((InetSocketAddress) remoteAddress).getAddress().isLoopbackAddress();
     }
 
-    private void setupTransferEvent(AccountEvent event, String payload, ChannelHandlerContext ctx) throws Exception {
-        Map parameters = extractPostRequestBody(payload);
+    private boolean tryAcquireClient(ChannelHandlerContext ctx, FullHttpRequest message) {
+        if (rateLimiters.remoteAddress.isEnabled()) {
+            SocketAddress remoteAddress = ctx.channel().remoteAddress();
+            // InetAddress.hashCode folds an IPv6 address into 32 bits, the key is built from all of its bytes instead
+            long key = remoteAddress instanceof InetSocketAddress && ((InetSocketAddress) remoteAddress).getAddress() != null
+                    ? TokenBucketRateLimiter.key(((InetSocketAddress) remoteAddress).getAddress().getAddress())
+                    : Objects.hashCode(remoteAddress);
+            if (!rateLimiters.remoteAddress.tryAcquire(key)) {
+                LOGGER.debug("Rate limit exceeded for address {}", remoteAddress);
+                return false;
+            }
+        }
+        if (rateLimiters.apiKey.isEnabled()) {
+            String apiKey = message.headers().get(API_KEY_HEADER);
+            if (apiKey != null && !rateLimiters.apiKey.tryAcquire(TokenBucketRateLimiter.key(apiKey))) {
+                LOGGER.debug("Rate limit exceeded for api key {}", apiKey);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryAcquireSourceAccount(UUID account) {
+        if (!rateLimiters.sourceAccount.tryAcquire(TokenBucketRateLimiter.key(account))) {
+            LOGGER.debug("Rate limit exceeded for account {}", account);
+            return false;
+        }
+        return true;
+    }
+
+    // a posting is limited as a whole, tokens already taken by earlier debit legs go back when a later one is rejected
+    private void releaseSourceAccounts(PostingLegs legs, int rejectedLeg) {
+        for (int leg = 0; leg < rejectedLeg; leg++) {
+            if (legs.amount(leg) < 0) {
+                rateLimiters.sourceAccount.release(TokenBucketRateLimiter.key(legs.account(leg)));
+            }
+        }
+    }
+
+    private void setupTransferEvent(AccountEvent event, UUID fromAccount, UUID toAccount, long amount, ChannelHandlerContext ctx) {
         event.eventType = EventType.TRANSFER;
         event.ctx = ctx;
-        event.accountFrom = UUID.fromString((String) parameters.get(ACCOUNT_FROM_REQUEST_PARAMETER));
-        event.accountTo = UUID.fromString((String) parameters.get(ACCOUNT_TO_REQUEST_PARAMETER));
-        event.amount = (Long) parameters.get(AMOUNT_REQUEST_PARAMETER);
-        event.resultConsumer = NettyHttpUtil::send200Ok;
-        event.errorConsumer = NettyHttpUtil::send500InternalServerError;
+        event.accountFrom = fromAccount;
+        event.accountTo = toAccount;
+        event.amount = amount;
+        setupConsumers(event);
     }
 
-    private void setupCreateEvent(AccountEvent event, String payload, ChannelHandlerContext ctx) throws Exception {
-        Map parameters = extractPostRequestBody(payload);
+    private void setupCreateEvent(AccountEvent event, long amount, ChannelHandlerContext ctx) {
         event.eventType = EventType.CREATE;
         event.ctx = ctx;
-        event.amount = (Long) parameters.get(AMOUNT_REQUEST_PARAMETER);
-        event.resultConsumer = NettyHttpUtil::send200Ok;
-        event.errorConsumer = NettyHttpUtil::send500InternalServerError;
+        event.amount = amount;
+        setupConsumers(event);
+    }
+
+    private void setupHoldEvent(AccountEvent event, UUID account, long amount, long timeout, ChannelHandlerContext ctx) {
+        event.eventType = EventType.HOLD;
+        event.ctx = ctx;
+        event.accountFrom = account;
+        event.amount = amount;
+        event.timeout = timeout;
+        setupConsumers(event);
     }
 
-    private void setupInfoEvent(AccountEvent event, String account, ChannelHandlerContext ctx) throws Exception {
+    private void setupCaptureEvent(AccountEvent event, long holdId, UUID toAccount, ChannelHandlerContext ctx) {
+        event.eventType = EventType.CAPTURE;
+        event.ctx = ctx;
+        event.holdId = holdId;
+        event.accountTo = toAccount;
+        setupConsumers(event);
+    }
+
+    private void setupReleaseEvent(AccountEvent event, long holdId, ChannelHandlerContext ctx) {
+        event.eventType = EventType.RELEASE;
+        event.ctx = ctx;
+        event.holdId = holdId;
+        setupConsumers(event);
+    }
+
+    private void setupPostingEvent(AccountEvent event, PostingLegs legs, ChannelHandlerContext ctx) {
+        event.eventType = EventType.POSTING;
+        event.ctx = ctx;
+        event.legs.copyFrom(legs);
+        setupConsumers(event);
+    }
+
+    private void setupInfoEvent(AccountEvent event, UUID account, ChannelHandlerContext ctx) {
         event.eventType = EventType.INFO;
         event.ctx = ctx;
-        event.accountFrom = UUID.fromString(account);
-        event.resultConsumer = NettyHttpUtil::send200Ok;
-        event.errorConsumer = NettyHttpUtil::send500InternalServerError;
+        event.accountFrom = account;
+        setupConsumers(event);
+    }
+
+    private void setupDigestEvent(AccountEvent event, ChannelHandlerContext ctx) {
+        event.eventType = EventType.DIGEST;
+        event.ctx = ctx;
+        setupConsumers(event);
+    }
+
+    private static void setupConsumers(AccountEvent event) {
+        event.resultConsumer = HttpRequestEventInboundHandler::replyResult;
+        event.rejectionConsumer = HttpRequestEventInboundHandler::replyRejection;
+        event.errorConsumer = HttpRequestEventInboundHandler::replyError;
+    }
+
+    private static void replyResult(AccountEvent event, String result) {
+        send200Ok(event.ctx, result);
+    }
+
+    private static void replyRejection(AccountEvent event, ResultCode resultCode) {
+        sendRejection(event.ctx, resultCode);
+    }
+
+    private static void replyError(AccountEvent event, Throwable error) {
+        send500InternalServerError(event.ctx, error);
     }
 }
@@ -0,0 +1,173 @@
+package com.transfer.netty;
+
+import io.netty.handler.codec.http.HttpMethod;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.POST;
+
+// Byte level trie over the ascii request target, built once for all routes. Matching walks the uri in place
+// and writes query parameters straight into the reusable RouteMatch, so routing a request allocates nothing.
+// Malformed parameters only flag the match, a flood of bad requests never pays for an exception.
+// A uri with percent escapes or '+' is decoded first, as URLDecoder did before the trie; only those allocate.
+class HttpRouter {
+
+    private static final int ASCII = 128;
+
+    private final Node getRoot = new Node();
+    private final Node postRoot = new Node();
+
+    HttpRouter() {
+        for (Route route : Route.values()) {
+            if (route.path != null) {
+                add(route);
+            }
+        }
+    }
+
+    private void add(Route route) {
+        Node node = root(route.method);
+        for (int i = 0; i < route.path.length(); i++) {
+            char c = route.path.charAt(i);
+            if (node.next[c] == null) {
+                node.next[c] = new Node();
+            }
+            node = node.next[c];
+        }
+        node.route = route;
+    }
+
+    private Node root(HttpMethod method) {
+        if (method == GET) {
+            return getRoot;
+        }
+        if (method == POST) {
+            return postRoot;
+        }
+        return null;
+    }
+
+    void route(HttpMethod method, String uri, RouteMatch match) {
+        match.reset();
+        if (uri.indexOf('%') != -1 || uri.indexOf('+') != -1) {
+            try {
+                uri = URLDecoder.decode(uri, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                match.malformed = true;
+            }
+        }
+        Node node = root(method);
+        int length = uri.length();
+        int i = 0;
+        while (node != null && i < length) {
+            char c = uri.charAt(i);
+            if (c == '?') {
+                break;
+            }
+            node = c < ASCII ? node.next[c] : null;
+            i++;
+        }
+        if (node == null || node.route == null) {
+            return;
+        }
+        match.route = node.route;
+        if (i < length) {
+            parseQuery(uri, i + 1, length, match);
+        }
+    }
+
+    private static void parseQuery(String uri, int start, int end, RouteMatch match) {
+        while (start < end) {
+            int separator = uri.indexOf('&', start);
+            int parameterEnd = separator == -1 ? end : separator;
+            int equals = uri.indexOf('=', start);
+            if (equals != -1 && equals < parameterEnd) {
+                parseParameter(uri, start, equals, equals + 1, parameterEnd, match);
+            }
+            start = parameterEnd + 1;
+        }
+    }
+
+    private static void parseParameter(String uri, int nameStart, int nameEnd, int valueStart, int valueEnd, RouteMatch match) {
+        if (isName(uri, nameStart, nameEnd, HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER)) {
+            parseAccount(uri, valueStart, valueEnd, match);
+        } else if (isName(uri, nameStart, nameEnd, HttpRequestEventInboundHandler.LIMIT_REQUEST_PARAMETER)) {
+            match.limit = parseLong(uri, valueStart, valueEnd, match);
+            match.hasLimit = true;
+        } else if (isName(uri, nameStart, nameEnd, HttpRequestEventInboundHandler.FROM_REQUEST_PARAMETER)) {
+            match.from = parseLong(uri, valueStart, valueEnd, match);
+            match.hasFrom = true;
+        } else if (isName(uri, nameStart, nameEnd, HttpRequestEventInboundHandler.TO_REQUEST_PARAMETER)) {
+            match.to = parseLong(uri, valueStart, valueEnd, match);
+            match.hasTo = true;
+        }
+    }
+
+    private static boolean isName(String uri, int start, int end, String name) {
+        return end - start == name.length() && uri.regionMatches(start, name, 0, name.length());
+    }
+
+    // at most 18 digits, so the value can not overflow
+    private static long parseLong(String uri, int start, int end, RouteMatch match) {
+        boolean negative = start < end && uri.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            match.malformed = true;
+            return 0;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = uri.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                match.malformed = true;
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // canonical 8-4-4-4-12 hex form, same layout UUID.toString produces
+    static boolean isAccount(CharSequence value, int start, int end) {
+        if (end - start != 36
+                || value.charAt(start + 8) != '-' || value.charAt(start + 13) != '-'
+                || value.charAt(start + 18) != '-' || value.charAt(start + 23) != '-') {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c != '-' && Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void parseAccount(String uri, int start, int end, RouteMatch match) {
+        if (!isAccount(uri, start, end)) {
+            match.malformed = true;
+            return;
+        }
+        match.accountMostSigBits = (parseHex(uri, start, start + 8) << 32)
+                | (parseHex(uri, start + 9, start + 13) << 16)
+                | parseHex(uri, start + 14, start + 18);
+        match.accountLeastSigBits = (parseHex(uri, start + 19, start + 23) << 48)
+                | parseHex(uri, start + 24, start + 36);
+        match.hasAccount = true;
+    }
+
+    private static long parseHex(String uri, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value << 4) | Character.digit(uri.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static class Node {
+        final Node[] next = new Node[ASCII];
+        Route route;
+    }
+}
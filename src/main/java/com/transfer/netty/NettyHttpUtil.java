@@ -1,27 +1,82 @@
 package com.transfer.netty;
 
+import com.transfer.core.ResultCode;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public class NettyHttpUtil {
 
+    // rejection bodies are rendered once per result code, only the wrapping buffer is allocated per response
+    private static final HttpResponseStatus[] REJECTION_STATUSES = new HttpResponseStatus[ResultCode.values().length];
+    private static final byte[][] REJECTION_BODIES = new byte[ResultCode.values().length][];
+    private static final byte[] INTERNAL_ERROR_BODY = "{\"error\":\"INTERNAL_ERROR\", \"message\":\"Internal server error\" }".getBytes(CharsetUtil.UTF_8);
+
+    static {
+        for (ResultCode resultCode : ResultCode.values()) {
+            REJECTION_STATUSES[resultCode.ordinal()] = rejectionStatus(resultCode);
+            REJECTION_BODIES[resultCode.ordinal()] = String.format("{\"error\":\"%s\", \"message\":\"%s\" }",
+                    resultCode.name(), resultCode.message).getBytes(CharsetUtil.UTF_8);
+        }
+    }
+
+    private static HttpResponseStatus rejectionStatus(ResultCode resultCode) {
+        switch (resultCode) {
+            case ACCOUNT_NOT_FOUND:
+            case FROM_ACCOUNT_NOT_FOUND:
+            case TO_ACCOUNT_NOT_FOUND:
+            case HOLD_NOT_FOUND:
+                return HttpResponseStatus.NOT_FOUND;
+            case INSUFFICIENT_FUNDS:
+                return HttpResponseStatus.CONFLICT;
+            case INVALID_AMOUNT:
+            case SAME_ACCOUNT:
+            case UNBALANCED_POSTING:
+                return HttpResponseStatus.UNPROCESSABLE_ENTITY;
+            case STORAGE_FULL:
+                return HttpResponseStatus.INSUFFICIENT_STORAGE;
+            default:
+                return HttpResponseStatus.BAD_REQUEST;
+        }
+    }
+
+    static ByteBuf rejectionBody(ResultCode resultCode) {
+        return Unpooled.wrappedBuffer(REJECTION_BODIES[resultCode.ordinal()]);
+    }
+
+    public static void sendRejection(ChannelHandlerContext context, ResultCode resultCode) {
+        ByteBuf errorMessage = rejectionBody(resultCode);
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, REJECTION_STATUSES[resultCode.ordinal()], errorMessage);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, errorMessage.readableBytes());
+        writeAndClose(context, response);
+    }
+
     public static void send400BadRequest(ChannelHandlerContext context, String message) {
         ByteBuf errorMessage = Unpooled.wrappedBuffer(message.getBytes());
 
         FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.BAD_REQUEST, errorMessage);
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, errorMessage.readableBytes());
-        context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeAndClose(context, response);
+    }
+
+    public static void send403Forbidden(ChannelHandlerContext context) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.FORBIDDEN);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+
+        writeAndClose(context, response);
     }
 
     public static void send404NotFound(ChannelHandlerContext context) {
@@ -29,7 +84,7 @@ public class NettyHttpUtil {
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
 
-        context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeAndClose(context, response);
     }
 
     public static void send408RequestTimeout(ChannelHandlerContext context) {
@@ -37,7 +92,15 @@ public class NettyHttpUtil {
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
 
-        context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeAndClose(context, response);
+    }
+
+    public static void send429TooManyRequests(ChannelHandlerContext context) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.TOO_MANY_REQUESTS);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+
+        writeAndClose(context, response);
     }
 
     public static void send200Ok(ChannelHandlerContext context, String message) {
@@ -46,15 +109,22 @@ public class NettyHttpUtil {
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, result.readableBytes());
 
-        context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeAndClose(context, response);
     }
 
+    // the cause is logged by the caller, clients only get the stable body
     public static void send500InternalServerError(ChannelHandlerContext context, Throwable e) {
-        ByteBuf errorMessage = Unpooled.wrappedBuffer(e.toString().getBytes());
+        ByteBuf errorMessage = Unpooled.wrappedBuffer(INTERNAL_ERROR_BODY);
 
         FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR, errorMessage);
-        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
         response.headers().set(HttpHeaderNames.CONTENT_LENGTH, errorMessage.readableBytes());
+        writeAndClose(context, response);
+    }
+
+    // every response ends its connection, saying so keeps pooling clients from reusing a socket that is being closed
+    private static void writeAndClose(ChannelHandlerContext context, FullHttpResponse response) {
+        response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
         context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
     }
 
@@ -66,8 +136,4 @@ public class NettyHttpUtil {
         }
         return (JSONObject) parser.parse(payload);
     }
-
-    static String extractGetRequestParameter(Map<String, List<String>> parameters, String parameterName) {
-        return parameters.get(parameterName).get(0);
-    }
 }
@@ -1,49 +1,131 @@
 package com.transfer.netty;
 
 import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.PerformanceProfile;
+import com.transfer.core.PerformanceProfiles;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadFactory;
 
 public class NettyServer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NettyServer.class);
     private static final int BYTES_IN_MEGABYTE = 1048576;
     private static final int MAX_FRAME_LENGTH = 4 * BYTES_IN_MEGABYTE;
+    public static final int DEFAULT_PORT = 80;
+    private static final String HTTP2_FRAME_CODEC = "http2FrameCodec";
+    static final String IDLE_STATE_HANDLER = "idleStateHandler";
+    private static final int IDLE_TIMEOUT_SECONDS = 120;
 
 
-    private final NioEventLoopGroup bossGroup = new NioEventLoopGroup(1);
-    private final NioEventLoopGroup workerGroup = new NioEventLoopGroup(3);
+    private final NioEventLoopGroup bossGroup;
+    private final NioEventLoopGroup workerGroup;
     private final FlowExceptionInboundHandler flowExceptionInboundHandler;
     private final HttpRequestEventInboundHandler httpRequestEventInboundHandler;
+    private final RequestTimingOutboundHandler requestTimingOutboundHandler;
+    private final AccountOperationsEventProcessor accountOperationsEventProcessor;
+    private final BalanceSubscriptions balanceSubscriptions;
+    private final BalanceWebSocketUpgradeHandler balanceWebSocketUpgradeHandler;
+    private final ChannelInitializer<Http2StreamChannel> http2StreamInitializer;
     private final ServerBootstrap bootstrap;
+    private final int port;
 
     private volatile Channel serverChannel;
 
     public NettyServer(AccountOperationsEventProcessor accountOperationsEventProcessor) {
-        this.httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
+        this(accountOperationsEventProcessor, DEFAULT_PORT);
+    }
+
+    public NettyServer(AccountOperationsEventProcessor accountOperationsEventProcessor, int port) {
+        this(accountOperationsEventProcessor, port, new DefaultThreadFactory("netty.boss"), new DefaultThreadFactory("netty.worker"), RateLimiters.disabled(), PerformanceProfiles.defaults(), RequestTimingSampler.disabled());
+    }
+
+    public NettyServer(AccountOperationsEventProcessor accountOperationsEventProcessor,
+                       int port,
+                       ThreadFactory bossThreadFactory,
+                       ThreadFactory workerThreadFactory,
+                       RateLimiters rateLimiters,
+                       PerformanceProfiles performanceProfiles,
+                       RequestTimingSampler requestTimingSampler) {
+        PerformanceProfile profile = performanceProfiles.startupProfile();
+        this.bossGroup = new NioEventLoopGroup(1, bossThreadFactory);
+        this.workerGroup = new NioEventLoopGroup(profile.eventLoopThreads(), workerThreadFactory);
+        // queued ahead of any channel registration, so every event loop holds its lane before its first request
+        int lane = 0;
+        for (EventExecutor eventLoop : workerGroup) {
+            int eventLoopLane = lane++;
+            eventLoop.execute(() -> accountOperationsEventProcessor.bindIngressLane(eventLoopLane));
+        }
+        this.httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor, rateLimiters, performanceProfiles, requestTimingSampler);
+        this.requestTimingOutboundHandler = new RequestTimingOutboundHandler();
         this.flowExceptionInboundHandler = new FlowExceptionInboundHandler();
+        this.accountOperationsEventProcessor = accountOperationsEventProcessor;
+        this.balanceSubscriptions = new BalanceSubscriptions();
+        this.balanceWebSocketUpgradeHandler = new BalanceWebSocketUpgradeHandler(balanceSubscriptions);
+        accountOperationsEventProcessor.addBalanceListener(balanceSubscriptions);
         this.bootstrap = new ServerBootstrap();
+        this.port = port;
+
+        // every h2 stream gets its own child channel, so responses written from the disruptor
+        // thread always land on the stream the request came from
+        this.http2StreamInitializer = new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Http2StreamChannel streamChannel) {
+                streamChannel.pipeline().addLast(
+                        new Http2StreamFrameToHttpObjectCodec(true),
+                        new HttpObjectAggregator(MAX_FRAME_LENGTH),
+                        requestTimingOutboundHandler,
+                        httpRequestEventInboundHandler,
+                        flowExceptionInboundHandler
+                );
+            }
+        };
 
         bootstrap.group(bossGroup, workerGroup)
                 .channel(NioServerSocketChannel.class)
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel socketChannel) {
+                        HttpServerCodec httpServerCodec = new HttpServerCodec();
+                        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(httpServerCodec, protocol ->
+                                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                                        ? new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(), new Http2MultiplexHandler(http2StreamInitializer))
+                                        : null);
+
+                        socketChannel.pipeline().addLast(IDLE_STATE_HANDLER, new IdleStateHandler(0, 0, IDLE_TIMEOUT_SECONDS));
+                        if (profile.flushConsolidation() > 0) {
+                            socketChannel.pipeline().addLast(new FlushConsolidationHandler(profile.flushConsolidation(), true));
+                        }
                         socketChannel.pipeline().addLast(
-                                new IdleStateHandler(0, 0, 120),
-                                new HttpServerCodec(),
+                                new CleartextHttp2ServerUpgradeHandler(httpServerCodec, upgradeHandler, new Http2PriorKnowledgeHandler()),
                                 new HttpObjectAggregator(MAX_FRAME_LENGTH),
+                                balanceWebSocketUpgradeHandler,
+                                requestTimingOutboundHandler,
                                 httpRequestEventInboundHandler,
                                 flowExceptionInboundHandler
                         );
@@ -53,13 +135,34 @@ public class NettyServer {
 
     public void start() throws Exception {
         LOGGER.info("Starting http server");
-        serverChannel = bootstrap.bind( new InetSocketAddress(80)).sync().channel();
+        serverChannel = bootstrap.bind(new InetSocketAddress(port)).sync().channel();
     }
 
     public void stop() {
+        accountOperationsEventProcessor.removeBalanceListener(balanceSubscriptions);
+        balanceSubscriptions.close();
         workerGroup.shutdownGracefully();
         bossGroup.shutdownGracefully();
-        serverChannel.close();
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
     }
 
+    public int port() {
+        return localAddress().getPort();
+    }
+
+    InetSocketAddress localAddress() {
+        return (InetSocketAddress) serverChannel.localAddress();
+    }
+
+    // installs frame codec and multiplexer in place of the cleartext upgrade handler on prior knowledge connections
+    private class Http2PriorKnowledgeHandler extends ChannelHandlerAdapter {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            ctx.pipeline().addAfter(ctx.name(), HTTP2_FRAME_CODEC, Http2FrameCodecBuilder.forServer().build());
+            ctx.pipeline().addAfter(HTTP2_FRAME_CODEC, null, new Http2MultiplexHandler(http2StreamInitializer));
+            ctx.pipeline().remove(this);
+        }
+    }
 }
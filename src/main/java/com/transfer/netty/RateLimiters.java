@@ -0,0 +1,17 @@
+package com.transfer.netty;
+
+public class RateLimiters {
+    final TokenBucketRateLimiter remoteAddress;
+    final TokenBucketRateLimiter apiKey;
+    final TokenBucketRateLimiter sourceAccount;
+
+    public RateLimiters(TokenBucketRateLimiter remoteAddress, TokenBucketRateLimiter apiKey, TokenBucketRateLimiter sourceAccount) {
+        this.remoteAddress = remoteAddress;
+        this.apiKey = apiKey;
+        this.sourceAccount = sourceAccount;
+    }
+
+    public static RateLimiters disabled() {
+        return new RateLimiters(TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled());
+    }
+}
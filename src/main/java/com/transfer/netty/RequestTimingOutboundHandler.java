@@ -0,0 +1,27 @@
+package com.transfer.netty;
+
+import com.transfer.core.RequestTimingEvent;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AttributeKey;
+
+@ChannelHandler.Sharable
+public class RequestTimingOutboundHandler extends ChannelOutboundHandlerAdapter {
+
+    static final AttributeKey<RequestTimingEvent> REQUEST_TIMING = AttributeKey.valueOf("requestTiming");
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse && ctx.channel().hasAttr(REQUEST_TIMING)) {
+            RequestTimingEvent timing = ctx.channel().attr(REQUEST_TIMING).getAndSet(null);
+            if (timing != null) {
+                promise = promise.unvoid();
+                promise.addListener(future -> timing.flushed());
+            }
+        }
+        ctx.write(msg, promise);
+    }
+}
@@ -0,0 +1,36 @@
+package com.transfer.netty;
+
+import com.transfer.core.RequestTimingEvent;
+import jdk.jfr.EventType;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks roughly one in sampleEvery requests for a RequestTimingEvent. Nothing is allocated unless a request
+// is sampled and a flight recording has the event enabled.
+public class RequestTimingSampler {
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(RequestTimingEvent.class);
+
+    private final int sampleEvery;
+
+    public RequestTimingSampler(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+
+    public static RequestTimingSampler disabled() {
+        return new RequestTimingSampler(0);
+    }
+
+    RequestTimingEvent sample() {
+        if (sampleEvery <= 0 || !EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return null;
+        }
+        RequestTimingEvent timing = new RequestTimingEvent();
+        timing.begin();
+        timing.receivedNanos = System.nanoTime();
+        return timing;
+    }
+}
@@ -0,0 +1,31 @@
+package com.transfer.netty;
+
+import io.netty.handler.codec.http.HttpMethod;
+
+import static com.transfer.netty.HttpRequestEventInboundHandler.*;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.POST;
+
+enum Route {
+    ACCOUNT_CREATE(POST, ACCOUNT_CREATE_REQUEST),
+    ACCOUNT_INFO(GET, ACCOUNT_INFO_REQUEST),
+    TRANSFER(POST, TRANSFER_REQUEST),
+    HOLD(POST, HOLD_REQUEST),
+    CAPTURE(POST, CAPTURE_REQUEST),
+    RELEASE(POST, RELEASE_REQUEST),
+    POSTING(POST, POSTING_REQUEST),
+    PROFILE_INFO(GET, PROFILE_REQUEST),
+    PROFILE_SWITCH(POST, PROFILE_REQUEST),
+    TOP_BALANCES(GET, TOP_BALANCES_REQUEST),
+    BALANCE_RANGE(GET, BALANCE_RANGE_REQUEST),
+    LEDGER_DIGEST(GET, LEDGER_DIGEST_REQUEST),
+    NOT_FOUND(null, null);
+
+    final HttpMethod method;
+    final String path;
+
+    Route(HttpMethod method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+}
@@ -0,0 +1,50 @@
+package com.transfer.netty;
+
+import java.util.UUID;
+
+// Reused per event loop thread, holds the matched route and its query parameters as primitives.
+class RouteMatch {
+    Route route;
+    boolean malformed;
+
+    boolean hasAccount;
+    long accountMostSigBits;
+    long accountLeastSigBits;
+
+    boolean hasLimit;
+    long limit;
+
+    boolean hasFrom;
+    long from;
+
+    boolean hasTo;
+    long to;
+
+    void reset() {
+        route = Route.NOT_FOUND;
+        malformed = false;
+        hasAccount = false;
+        hasLimit = false;
+        hasFrom = false;
+        hasTo = false;
+    }
+
+    UUID account() {
+        if (!hasAccount) {
+            throw new IllegalArgumentException("Account parameter is missing");
+        }
+        return new UUID(accountMostSigBits, accountLeastSigBits);
+    }
+
+    long limit(long defaultValue) {
+        return hasLimit ? limit : defaultValue;
+    }
+
+    long from(long defaultValue) {
+        return hasFrom ? from : defaultValue;
+    }
+
+    long to(long defaultValue) {
+        return hasTo ? to : defaultValue;
+    }
+}
@@ -0,0 +1,168 @@
+package com.transfer.netty;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+// Fixed size open addressing table of token buckets shared by all event loops.
+// Slots are claimed and updated with CAS only, a bucket that has been idle long enough to refill
+// completely is indistinguishable from a new one, so it is evicted in place by the next key probing it.
+// A bucket is kept as the single nanosecond instant at which it will be full again: every token moves that instant
+// one refill interval forward and a request is let through while it stays within capacity intervals of now.
+// Elapsed time is never rounded to whole tokens, so a refill rate that does not divide a second stays exact.
+public class TokenBucketRateLimiter {
+
+    private static final int DEFAULT_SLOTS = 1 << 16;
+    private static final int MAX_PROBES = 8;
+    private static final long EMPTY_KEY = 0;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    static final long MAX_CAPACITY = (1L << 20) - 1;
+
+    private final long capacity;
+    private final boolean refills;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray fullAt;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+
+    public TokenBucketRateLimiter(long capacity, long refillPerSecond) {
+        this(capacity, refillPerSecond, DEFAULT_SLOTS, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long capacity, long refillPerSecond, int slots) {
+        this(capacity, refillPerSecond, slots, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long capacity, long refillPerSecond, int slots, LongSupplier nanoClock) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity should not be greater then " + MAX_CAPACITY);
+        }
+        if (refillPerSecond < 0) {
+            throw new IllegalArgumentException("Refill per second should not be negative");
+        }
+        this.capacity = capacity;
+        this.refills = refillPerSecond > 0;
+        // without refill the clock stands still and the instant only counts the tokens taken
+        this.intervalNanos = refills ? Math.max(1, NANOS_PER_SECOND / refillPerSecond) : 1;
+        this.burstNanos = Math.max(capacity, 0) * intervalNanos;
+        int size = Integer.highestOneBit(Math.max(slots, MAX_PROBES) - 1) << 1;
+        this.mask = size - 1;
+        this.keys = new AtomicLongArray(size);
+        this.fullAt = new AtomicLongArray(size);
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    public static TokenBucketRateLimiter disabled() {
+        return new TokenBucketRateLimiter(0, 0, MAX_PROBES);
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public boolean tryAcquire(long key) {
+        if (capacity <= 0) {
+            return true;
+        }
+        if (key == EMPTY_KEY) {
+            key = 1;
+        }
+        long now = nowNanos();
+        int index = (int) mix(key) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+            long slotKey = keys.get(index);
+            if (slotKey == key) {
+                return acquire(index, now);
+            }
+            if (slotKey == EMPTY_KEY || isIdle(fullAt.get(index), now)) {
+                if (keys.compareAndSet(index, slotKey, key)) {
+                    fullAt.set(index, now);
+                    return acquire(index, now);
+                }
+                if (keys.get(index) == key) {
+                    return acquire(index, now);
+                }
+            }
+        }
+        // table is saturated with active clients, better to let the request through than to reject it at random
+        return true;
+    }
+
+    // gives back a token taken by tryAcquire for a request that was rejected before it was processed
+    public void release(long key) {
+        if (capacity <= 0) {
+            return;
+        }
+        if (key == EMPTY_KEY) {
+            key = 1;
+        }
+        long now = nowNanos();
+        int index = (int) mix(key) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+            long slotKey = keys.get(index);
+            if (slotKey == key) {
+                while (true) {
+                    long full = fullAt.get(index);
+                    if (full <= now || fullAt.compareAndSet(index, full, Math.max(now, full - intervalNanos))) {
+                        return;
+                    }
+                }
+            }
+            if (slotKey == EMPTY_KEY) {
+                return;
+            }
+        }
+    }
+
+    private boolean acquire(int index, long now) {
+        while (true) {
+            long full = fullAt.get(index);
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(index, full, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isIdle(long full, long now) {
+        return full <= now;
+    }
+
+    private long nowNanos() {
+        return refills ? nanoClock.getAsLong() - startNanos : 0;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    public static long key(UUID uuid) {
+        return uuid.getMostSignificantBits() * 31 + uuid.getLeastSignificantBits();
+    }
+
+    public static long key(CharSequence value) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    public static long key(byte[] value) {
+        long hash = 1125899906842597L;
+        for (byte b : value) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+}
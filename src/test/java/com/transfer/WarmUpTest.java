@@ -0,0 +1,64 @@
+package com.transfer;
+
+import com.transfer.core.AccountEvent;
+import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.BalanceIndex;
+import com.transfer.core.EventType;
+import com.transfer.netty.NettyHttpUtil;
+import org.awaitility.Duration;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class WarmUpTest {
+
+    @Test
+    public void shouldLeaveRealAccountsUntouched() throws Exception {
+        //Given
+        try (AccountOperationsEventProcessor accountOperationsEventProcessor = new AccountOperationsEventProcessor()) {
+            UUID account = UUID.fromString((String) NettyHttpUtil.extractPostRequestBody(
+                    handle(accountOperationsEventProcessor, EventType.CREATE, null, 1000)).get("account"));
+            Map digestBefore = digest(accountOperationsEventProcessor);
+            List<BalanceIndex.Entry> topBefore = accountOperationsEventProcessor.balanceIndex().top(10);
+
+            //When
+            int succeeded = new WarmUp(40).run();
+
+            //Then
+            assertThat(succeeded).isEqualTo(40);
+            assertThat(accountOperationsEventProcessor.balanceIndex().top(10))
+                    .containsExactlyElementsOf(topBefore)
+                    .extracting(entry -> entry.account).containsExactly(account);
+            assertThat(digest(accountOperationsEventProcessor)).isEqualTo(digestBefore);
+        }
+    }
+
+    // the sequence moves with every event, everything else in the digest has to stay as it was
+    private static Map digest(AccountOperationsEventProcessor accountOperationsEventProcessor) throws Exception {
+        Map digest = NettyHttpUtil.extractPostRequestBody(handle(accountOperationsEventProcessor, EventType.DIGEST, null, 0));
+        digest.remove("sequence");
+        return digest;
+    }
+
+    private static String handle(AccountOperationsEventProcessor accountOperationsEventProcessor, EventType eventType, UUID account, long amount) {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent event = accountOperationsEventProcessor.nextEvent();
+        event.eventType = eventType;
+        event.accountFrom = account;
+        event.amount = amount;
+        event.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(event);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+        return payload.get();
+    }
+}
@@ -0,0 +1,68 @@
+package com.transfer.affinity;
+
+import net.openhft.affinity.AffinityLock;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PinnedThreadFactoryTest {
+
+    @Test
+    public void shouldParseListsAndRanges() {
+        assertThat(PinnedThreadFactory.parseCpus(new String[]{"0", " 2 ", "5-7", "9 - 10"})).containsExactly(0, 2, 5, 6, 7, 9, 10);
+        assertThat(PinnedThreadFactory.parseCpus(new String[]{"3-3"})).containsExactly(3);
+    }
+
+    @Test
+    public void shouldLeavePlacementToSchedulerForEmptyValue() {
+        assertThat(PinnedThreadFactory.parseCpus(new String[0])).isEmpty();
+        assertThat(PinnedThreadFactory.parseCpus(new String[]{"", " "})).isEmpty();
+    }
+
+    @Test
+    public void shouldRejectMalformedEntries() {
+        for (String value : new String[]{"one", "-1", "4-2", "1-", "1-2-3", "2.5"}) {
+            assertThatThrownBy(() -> PinnedThreadFactory.parseCpus(new String[]{value}))
+                    .as(value)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void shouldRunUnpinnedWhenPinningFails() throws Exception {
+        //Given
+        PinnedThreadFactory threadFactory = new PinnedThreadFactory(Executors.defaultThreadFactory(), new int[]{1},
+                cpu -> {
+                    throw new UnsatisfiedLinkError("no affinity library");
+                });
+        AtomicBoolean ran = new AtomicBoolean();
+
+        //When
+        Thread thread = threadFactory.newThread(() -> ran.set(true));
+        thread.start();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+
+        //Then
+        assertThat(ran.get()).isTrue();
+    }
+
+    @Test
+    public void shouldRunUnpinnedWhenCpuIsNotAvailable() throws Exception {
+        //Given
+        PinnedThreadFactory threadFactory = new PinnedThreadFactory(Executors.defaultThreadFactory(), new int[]{AffinityLock.PROCESSORS + 64});
+        AtomicBoolean ran = new AtomicBoolean();
+
+        //When
+        Thread thread = threadFactory.newThread(() -> ran.set(true));
+        thread.start();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+
+        //Then
+        assertThat(ran.get()).isTrue();
+    }
+}
@@ -6,10 +6,13 @@ import org.awaitility.Duration;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.awaitility.Awaitility.await;
 
 public class AccountOperationsEventProcessorTest {
@@ -28,7 +31,7 @@ public class AccountOperationsEventProcessorTest {
         createEvent.eventType = EventType.CREATE;
         createEvent.amount = -1;
         //Then
-        createEvent.errorConsumer = (ctx, th) -> assertThat(th instanceof IllegalArgumentException).isTrue();
+        createEvent.rejectionConsumer = (ctx, resultCode) -> assertThat(resultCode).isEqualTo(ResultCode.INVALID_AMOUNT);
         //When
         accountOperationsEventProcessor.publishEvent(createEvent);
     }
@@ -52,7 +55,7 @@ public class AccountOperationsEventProcessorTest {
         infoEvent.eventType = EventType.INFO;
         infoEvent.accountFrom = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
         //Then
-        infoEvent.errorConsumer = (ctx, th) -> assertThat(th instanceof IllegalArgumentException).isTrue();
+        infoEvent.rejectionConsumer = (ctx, resultCode) -> assertThat(resultCode).isEqualTo(ResultCode.ACCOUNT_NOT_FOUND);
         //When
         accountOperationsEventProcessor.publishEvent(infoEvent);
     }
@@ -180,4 +183,480 @@ public class AccountOperationsEventProcessorTest {
         };
         accountOperationsEventProcessor.publishEvent(infoEventTo);
     }
+
+    @Test
+    public void shouldReserveAndCaptureHold() throws Exception {
+        //Given
+        UUID uuidFrom = createAccount(1000);
+        UUID uuidTo = createAccount(1000);
+
+        //When
+        long holdId = hold(uuidFrom, 300, 0);
+
+        //Then
+        assertThat(info(uuidFrom).get("amount")).isEqualTo(700L);
+        assertThat(info(uuidFrom).get("reserved")).isEqualTo(300L);
+
+        //When
+        AtomicReference<String> resultCapture = new AtomicReference<>();
+        AccountEvent captureEvent = accountOperationsEventProcessor.nextEvent();
+        captureEvent.eventType = EventType.CAPTURE;
+        captureEvent.holdId = holdId;
+        captureEvent.accountTo = uuidTo;
+        captureEvent.resultConsumer = (ctx, s) -> resultCapture.set(s);
+        accountOperationsEventProcessor.publishEvent(captureEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(resultCapture.get()).isNotNull());
+
+        //Then
+        assertThat(info(uuidFrom).get("amount")).isEqualTo(700L);
+        assertThat(info(uuidFrom).get("reserved")).isEqualTo(0L);
+        assertThat(info(uuidTo).get("amount")).isEqualTo(1300L);
+    }
+
+    @Test
+    public void shouldNotHoldMoreThanAvailable() throws Exception {
+        //Given
+        UUID uuid = createAccount(1000);
+        hold(uuid, 800, 0);
+
+        //When
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent holdEvent = accountOperationsEventProcessor.nextEvent();
+        holdEvent.eventType = EventType.HOLD;
+        holdEvent.accountFrom = uuid;
+        holdEvent.amount = 300;
+        holdEvent.timeout = 0;
+        holdEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(holdEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.INSUFFICIENT_FUNDS));
+    }
+
+    @Test
+    public void shouldRejectTransferToSameAccount() throws Exception {
+        //Given
+        UUID uuid = createAccount(1000);
+
+        //When
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent transferEvent = accountOperationsEventProcessor.nextEvent();
+        transferEvent.eventType = EventType.TRANSFER;
+        transferEvent.accountFrom = uuid;
+        transferEvent.accountTo = uuid;
+        transferEvent.amount = 100;
+        transferEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(transferEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.SAME_ACCOUNT));
+        assertThat(info(uuid).get("amount")).isEqualTo(1000L);
+    }
+
+    @Test
+    public void shouldReturnMoneyWhenHoldExpires() throws Exception {
+        //Given
+        UUID uuid = createAccount(1000);
+
+        //When
+        hold(uuid, 400, 50);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
+                .untilAsserted(() -> {
+                    assertThat(info(uuid).get("amount")).isEqualTo(1000L);
+                    assertThat(info(uuid).get("reserved")).isEqualTo(0L);
+                });
+    }
+
+    @Test
+    public void shouldReturnMoneyWhenHoldReleased() throws Exception {
+        //Given
+        UUID uuid = createAccount(1000);
+        long holdId = hold(uuid, 400, 0);
+
+        //When
+        AtomicReference<String> result = new AtomicReference<>();
+        AccountEvent releaseEvent = accountOperationsEventProcessor.nextEvent();
+        releaseEvent.eventType = EventType.RELEASE;
+        releaseEvent.holdId = holdId;
+        releaseEvent.resultConsumer = (ctx, s) -> result.set(s);
+        accountOperationsEventProcessor.publishEvent(releaseEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(result.get()).isNotNull());
+
+        //Then
+        assertThat(info(uuid).get("amount")).isEqualTo(1000L);
+        assertThat(info(uuid).get("reserved")).isEqualTo(0L);
+        assertThat(releaseRejection(holdId)).isEqualTo(ResultCode.HOLD_NOT_FOUND);
+    }
+
+    @Test
+    public void shouldForgetHoldOnceExpired() throws Exception {
+        //Given
+        UUID uuidFrom = createAccount(1000);
+        UUID uuidTo = createAccount(1000);
+        long holdId = hold(uuidFrom, 400, 20);
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
+                .untilAsserted(() -> assertThat(info(uuidFrom).get("reserved")).isEqualTo(0L));
+
+        //When
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent captureEvent = accountOperationsEventProcessor.nextEvent();
+        captureEvent.eventType = EventType.CAPTURE;
+        captureEvent.holdId = holdId;
+        captureEvent.accountTo = uuidTo;
+        captureEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(captureEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.HOLD_NOT_FOUND));
+        assertThat(releaseRejection(holdId)).isEqualTo(ResultCode.HOLD_NOT_FOUND);
+        assertThat(info(uuidFrom).get("amount")).isEqualTo(1000L);
+        assertThat(info(uuidTo).get("amount")).isEqualTo(1000L);
+    }
+
+    @Test
+    public void shouldKeepProcessingAfterWaitStrategySwitch() {
+        //Given
+        PerformanceProfiles performanceProfiles = PerformanceProfiles.defaults();
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(Thread::new, performanceProfiles.startupProfile())) {
+            for (String profile : new String[]{PerformanceProfiles.LOW_CPU, PerformanceProfiles.THROUGHPUT, PerformanceProfiles.LOWEST_LATENCY}) {
+                //When
+                processor.switchProfile(performanceProfiles.get(profile));
+
+                //Then
+                AtomicReference<String> payload = new AtomicReference<>();
+                AccountEvent createEvent = processor.nextEvent();
+                createEvent.eventType = EventType.CREATE;
+                createEvent.amount = 1000;
+                createEvent.resultConsumer = (ctx, s) -> payload.set(s);
+                processor.publishEvent(createEvent);
+
+                await()
+                        .atMost(Duration.FIVE_SECONDS)
+                        .pollInterval(Duration.ONE_MILLISECOND)
+                        .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+                assertThat(processor.profile().waitStrategy()).isEqualTo(performanceProfiles.get(profile).waitStrategy());
+                assertThat(processor.profile().name()).isEqualTo(PerformanceProfiles.LOWEST_LATENCY);
+                assertThat(processor.profile().ringSize()).isEqualTo(performanceProfiles.startupProfile().ringSize());
+            }
+        }
+    }
+
+    @Test
+    public void shouldHandleEventsFromEveryPerEventLoopLane() throws Exception {
+        //Given
+        PerformanceProfile profile = new PerformanceProfile("lanes", PerformanceProfile.YIELDING, 16, 0, 2, PerformanceProfile.PER_EVENT_LOOP);
+        int producers = 4;
+        int eventsPerProducer = 100;
+        AtomicInteger created = new AtomicInteger();
+
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(Thread::new, profile)) {
+            //When
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                // two producers take the lanes, the other two have none and publish to the shared ring
+                int lane = i;
+                threads[i] = new Thread(() -> {
+                    processor.bindIngressLane(lane);
+                    for (int j = 0; j < eventsPerProducer; j++) {
+                        AccountEvent createEvent = processor.nextEvent();
+                        createEvent.eventType = EventType.CREATE;
+                        createEvent.amount = 10;
+                        createEvent.timing = null;
+                        createEvent.resultConsumer = (ctx, s) -> created.incrementAndGet();
+                        processor.publishEvent(createEvent);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> assertThat(created.get()).isEqualTo(producers * eventsPerProducer));
+            assertThat(processor.balanceIndex().top(producers * eventsPerProducer)).hasSize(producers * eventsPerProducer);
+        }
+    }
+
+    @Test
+    public void shouldKeepBalanceIndexOrderedAfterTransfer() throws Exception {
+        //Given
+        UUID uuidFrom = createAccount(20_000_000);
+        UUID uuidTo = createAccount(10_000_000);
+        assertThat(accountOperationsEventProcessor.balanceIndex().top(2))
+                .extracting(entry -> entry.account)
+                .containsExactly(uuidFrom, uuidTo);
+
+        //When
+        AtomicReference<String> resultTransfer = new AtomicReference<>();
+        AccountEvent transferEvent = accountOperationsEventProcessor.nextEvent();
+        transferEvent.eventType = EventType.TRANSFER;
+        transferEvent.accountFrom = uuidFrom;
+        transferEvent.accountTo = uuidTo;
+        transferEvent.amount = 15_000_000;
+        transferEvent.resultConsumer = (ctx, s) -> resultTransfer.set(s);
+        accountOperationsEventProcessor.publishEvent(transferEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(resultTransfer.get()).isNotNull());
+
+        //Then
+        assertThat(accountOperationsEventProcessor.balanceIndex().top(1))
+                .extracting(entry -> entry.account, entry -> entry.balance)
+                .containsExactly(tuple(uuidTo, 25_000_000L));
+        assertThat(accountOperationsEventProcessor.balanceIndex().range(5_000_000, 5_000_000, 10))
+                .extracting(entry -> entry.account)
+                .containsExactly(uuidFrom);
+    }
+
+    @Test
+    public void shouldConserveLedgerTotalAcrossTransferAndHold() throws Exception {
+        //Given
+        UUID uuidFrom = createAccount(3000);
+        UUID uuidTo = createAccount(1000);
+        Map before = digest();
+
+        //When
+        AtomicReference<String> resultTransfer = new AtomicReference<>();
+        AccountEvent transferEvent = accountOperationsEventProcessor.nextEvent();
+        transferEvent.eventType = EventType.TRANSFER;
+        transferEvent.accountFrom = uuidFrom;
+        transferEvent.accountTo = uuidTo;
+        transferEvent.amount = 700;
+        transferEvent.resultConsumer = (ctx, s) -> resultTransfer.set(s);
+        accountOperationsEventProcessor.publishEvent(transferEvent);
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(resultTransfer.get()).isNotNull());
+        hold(uuidTo, 200, 0);
+        Map after = digest();
+
+        //Then
+        assertThat((Long) after.get("sequence")).isGreaterThan((Long) before.get("sequence"));
+        assertThat(after.get("digest")).isNotEqualTo(before.get("digest"));
+        assertThat(after.get("accounts")).isEqualTo(before.get("accounts"));
+        assertThat((Long) after.get("total") + (Long) after.get("reserved"))
+                .isEqualTo((Long) before.get("total") + (Long) before.get("reserved"));
+    }
+
+    @Test(timeOut = 10_000)
+    public void shouldCloseEvenWhenClaimedEventIsNeverPublished() {
+        //Given
+        PerformanceProfile profile = new PerformanceProfile("lanes", PerformanceProfile.YIELDING, 16, 0, 1, PerformanceProfile.PER_EVENT_LOOP);
+        AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(Thread::new, profile);
+        processor.nextEvent();
+
+        //When
+        processor.close();
+
+        //Then returns instead of waiting for the slot forever
+    }
+
+    @Test
+    public void shouldApplyBalancedPostingToEveryLeg() throws Exception {
+        //Given
+        UUID payer = createAccount(1000);
+        UUID seller = createAccount(0);
+        UUID platform = createAccount(50);
+
+        //When
+        AtomicReference<String> result = new AtomicReference<>();
+        AccountEvent postingEvent = postingEvent(payer, -1000, seller, 900, platform, 100);
+        postingEvent.resultConsumer = (ctx, s) -> result.set(s);
+        accountOperationsEventProcessor.publishEvent(postingEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(result.get()).isNotNull());
+        assertThat(info(payer).get("amount")).isEqualTo(0L);
+        assertThat(info(seller).get("amount")).isEqualTo(900L);
+        assertThat(info(platform).get("amount")).isEqualTo(150L);
+    }
+
+    @Test
+    public void shouldNetLegsOfTheSameAccountBeforeCheckingFunds() throws Exception {
+        //Given
+        UUID payer = createAccount(100);
+        UUID payee = createAccount(0);
+
+        //When
+        AtomicReference<String> result = new AtomicReference<>();
+        AccountEvent postingEvent = postingEvent(payer, 200, payer, -300, payee, 100);
+        postingEvent.resultConsumer = (ctx, s) -> result.set(s);
+        accountOperationsEventProcessor.publishEvent(postingEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(result.get()).isNotNull());
+        assertThat(info(payer).get("amount")).isEqualTo(0L);
+        assertThat(info(payee).get("amount")).isEqualTo(100L);
+    }
+
+    @Test
+    public void shouldRejectPostingWhoseLegsDoNotNetToZero() throws Exception {
+        //Given
+        UUID payer = createAccount(1000);
+        UUID payee = createAccount(0);
+
+        //When
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent postingEvent = postingEvent(payer, -100, payee, 150);
+        postingEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(postingEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.UNBALANCED_POSTING));
+        assertThat(info(payer).get("amount")).isEqualTo(1000L);
+        assertThat(info(payee).get("amount")).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotApplyAnyLegWhenOneDebitExceedsBalance() throws Exception {
+        //Given
+        UUID firstPayer = createAccount(1000);
+        UUID secondPayer = createAccount(100);
+        UUID payee = createAccount(0);
+
+        //When
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent postingEvent = postingEvent(firstPayer, -500, secondPayer, -500, payee, 1000);
+        postingEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(postingEvent);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.INSUFFICIENT_FUNDS));
+        assertThat(info(firstPayer).get("amount")).isEqualTo(1000L);
+        assertThat(info(secondPayer).get("amount")).isEqualTo(100L);
+        assertThat(info(payee).get("amount")).isEqualTo(0L);
+    }
+
+    private AccountEvent postingEvent(Object... legs) {
+        AccountEvent postingEvent = accountOperationsEventProcessor.nextEvent();
+        postingEvent.eventType = EventType.POSTING;
+        postingEvent.legs.clear();
+        for (int i = 0; i < legs.length; i += 2) {
+            postingEvent.legs.add((UUID) legs[i], ((Number) legs[i + 1]).longValue());
+        }
+        return postingEvent;
+    }
+
+    private UUID createAccount(long amount) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent createEvent = accountOperationsEventProcessor.nextEvent();
+        createEvent.eventType = EventType.CREATE;
+        createEvent.amount = amount;
+        createEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(createEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return UUID.fromString((String) NettyHttpUtil.extractPostRequestBody(payload.get()).get("account"));
+    }
+
+    private long hold(UUID account, long amount, long timeout) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent holdEvent = accountOperationsEventProcessor.nextEvent();
+        holdEvent.eventType = EventType.HOLD;
+        holdEvent.accountFrom = account;
+        holdEvent.amount = amount;
+        holdEvent.timeout = timeout;
+        holdEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(holdEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return (Long) NettyHttpUtil.extractPostRequestBody(payload.get()).get("hold");
+    }
+
+    private Map info(UUID account) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent infoEvent = accountOperationsEventProcessor.nextEvent();
+        infoEvent.eventType = EventType.INFO;
+        infoEvent.accountFrom = account;
+        infoEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(infoEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return NettyHttpUtil.extractPostRequestBody(payload.get());
+    }
+
+    private ResultCode releaseRejection(long holdId) {
+        AtomicReference<ResultCode> rejection = new AtomicReference<>();
+        AccountEvent releaseEvent = accountOperationsEventProcessor.nextEvent();
+        releaseEvent.eventType = EventType.RELEASE;
+        releaseEvent.holdId = holdId;
+        releaseEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+        accountOperationsEventProcessor.publishEvent(releaseEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(rejection.get()).isNotNull());
+
+        return rejection.get();
+    }
+
+    private Map digest() throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent digestEvent = accountOperationsEventProcessor.nextEvent();
+        digestEvent.eventType = EventType.DIGEST;
+        digestEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(digestEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return NettyHttpUtil.extractPostRequestBody(payload.get());
+    }
 }
@@ -0,0 +1,74 @@
+package com.transfer.core;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput of claim and publish through each ingress as producer threads scale, every event is a transfer
+// from an unknown account so the consumer does the least work possible and the ring dominates the cost.
+// mvn -Pingress-benchmark test-compile exec:java -Dbenchmark.events=10000000 -Dbenchmark.producers=1,2,4,8
+public class IngressBenchmark {
+
+    private static final UUID UNKNOWN_ACCOUNT = new UUID(0, 1);
+
+    public static void main(String[] args) throws Exception {
+        long events = Long.getLong("benchmark.events", 2_000_000);
+        String[] producerCounts = System.getProperty("benchmark.producers", "1,2,4,8").split(",");
+        String waitStrategy = System.getProperty("benchmark.waitStrategy", PerformanceProfile.YIELDING);
+
+        System.out.printf("%-16s %10s %15s%n", "ingress", "producers", "events/s");
+        for (String producerCount : producerCounts) {
+            int producers = Integer.parseInt(producerCount.trim());
+            for (String ingress : new String[]{PerformanceProfile.MULTI_PRODUCER, PerformanceProfile.PER_EVENT_LOOP}) {
+                PerformanceProfile profile = new PerformanceProfile(ingress, waitStrategy, 4096, 0, producers, ingress);
+                run(profile, producers, events / 10);
+                double rate = run(profile, producers, events);
+                System.out.printf("%-16s %10d %15.0f%n", ingress, producers, rate);
+            }
+        }
+    }
+
+    private static double run(PerformanceProfile profile, int producers, long events) throws Exception {
+        long eventsPerProducer = events / producers;
+        long total = eventsPerProducer * producers;
+        AtomicLong handled = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(Thread::new, profile)) {
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                int lane = i;
+                threads[i] = new Thread(() -> {
+                    // stands in for the event loop binding NettyServer does
+                    processor.bindIngressLane(lane);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (long j = 0; j < eventsPerProducer; j++) {
+                        AccountEvent event = processor.nextEvent();
+                        event.eventType = EventType.TRANSFER;
+                        event.accountFrom = UNKNOWN_ACCOUNT;
+                        event.accountTo = UNKNOWN_ACCOUNT;
+                        event.timing = null;
+                        event.rejectionConsumer = (ctx, resultCode) -> handled.lazySet(handled.get() + 1);
+                        processor.publishEvent(event);
+                    }
+                }, "producer-" + i);
+                threads[i].start();
+            }
+
+            long startNanos = System.nanoTime();
+            start.countDown();
+            while (handled.get() < total) {
+                Thread.yield();
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return total * 1e9 / elapsedNanos;
+        }
+    }
+}
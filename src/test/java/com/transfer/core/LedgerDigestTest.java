@@ -0,0 +1,67 @@
+package com.transfer.core;
+
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LedgerDigestTest {
+
+    private final UUID first = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
+    private final UUID second = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce5");
+
+    @Test
+    public void shouldNotDependOnOrderOfChanges() {
+        //Given
+        LedgerDigest forward = new LedgerDigest();
+        LedgerDigest backward = new LedgerDigest();
+
+        //When
+        forward.update(first, -1, 1000);
+        forward.update(second, -1, 500);
+        forward.update(first, 1000, 900);
+        forward.update(second, 500, 600);
+
+        backward.update(second, -1, 600);
+        backward.update(first, -1, 900);
+
+        //Then
+        assertThat(forward.digest()).isEqualTo(backward.digest());
+        assertThat(forward.total()).isEqualTo(1500).isEqualTo(backward.total());
+        assertThat(forward.accounts()).isEqualTo(2).isEqualTo(backward.accounts());
+    }
+
+    @Test
+    public void shouldMatchFullWalkOfStorage() {
+        //Given
+        LedgerDigest ledgerDigest = new LedgerDigest();
+        AccountStorage storage = new InMemoryAccountStorage();
+
+        //When
+        ledgerDigest.update(first, storage.put(first, 1000), 1000);
+        ledgerDigest.update(second, storage.put(second, 0), 0);
+        ledgerDigest.update(first, storage.put(first, 400), 400);
+        ledgerDigest.update(second, storage.put(second, 600), 600);
+
+        //Then
+        assertThat(ledgerDigest.digest()).isEqualTo(LedgerDigest.digestOf(storage));
+    }
+
+    @Test
+    public void shouldDistinguishSwappedBalances() {
+        //Given
+        LedgerDigest ledgerDigest = new LedgerDigest();
+        LedgerDigest swapped = new LedgerDigest();
+
+        //When
+        ledgerDigest.update(first, -1, 1000);
+        ledgerDigest.update(second, -1, 500);
+        swapped.update(first, -1, 500);
+        swapped.update(second, -1, 1000);
+
+        //Then
+        assertThat(ledgerDigest.total()).isEqualTo(swapped.total());
+        assertThat(ledgerDigest.digest()).isNotEqualTo(swapped.digest());
+    }
+}
@@ -0,0 +1,230 @@
+package com.transfer.core;
+
+import com.transfer.netty.NettyHttpUtil;
+import org.awaitility.Duration;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+public class TieredAccountStorageTest {
+
+    @Test
+    public void shouldReadEvictedAccountsThroughColdTier() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        List<UUID> accounts = new ArrayList<>();
+
+        try (TieredAccountStorage storage = new TieredAccountStorage(2, coldFile, 16)) {
+            //When
+            for (int i = 0; i < 5; i++) {
+                UUID account = UUID.randomUUID();
+                accounts.add(account);
+                assertThat(storage.put(account, 100 * i)).isEqualTo(AccountStorage.NO_ACCOUNT);
+            }
+
+            //Then
+            assertThat(storage.hotSize()).isEqualTo(2);
+            assertThat(storage.coldSize()).isEqualTo(3);
+            for (int i = 0; i < 5; i++) {
+                assertThat(storage.get(accounts.get(i))).isEqualTo(100 * i);
+            }
+            assertThat(storage.put(accounts.get(0), 7)).isEqualTo(0);
+            assertThat(storage.get(UUID.randomUUID())).isEqualTo(AccountStorage.NO_ACCOUNT);
+        }
+    }
+
+    @Test
+    public void shouldGiveReferencedAccountsSecondChance() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        try (TieredAccountStorage storage = new TieredAccountStorage(3, coldFile, 16)) {
+            storage.put(first, 1);
+            storage.put(second, 2);
+            storage.put(third, 3);
+            // clears every reference bit on its way round and evicts first
+            storage.put(UUID.randomUUID(), 4);
+
+            //When
+            storage.get(second);
+            storage.put(UUID.randomUUID(), 5);
+
+            //Then
+            assertThat(storage.isHot(first)).isFalse();
+            assertThat(storage.isHot(second)).isTrue();
+            assertThat(storage.isHot(third)).isFalse();
+            assertThat(storage.coldSize()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void shouldVisitEveryAccountOnceWithLatestBalance() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        AccountStorage expected = new InMemoryAccountStorage();
+        List<UUID> accounts = new ArrayList<>();
+
+        try (TieredAccountStorage storage = new TieredAccountStorage(2, coldFile, 16)) {
+            for (int i = 0; i < 5; i++) {
+                UUID account = UUID.randomUUID();
+                accounts.add(account);
+                storage.put(account, 100 * i);
+                expected.put(account, 100 * i);
+            }
+
+            //When
+            // accounts come back into the hot tier and change there, leaving older copies in the cold file
+            for (int i = 0; i < 5; i += 2) {
+                storage.put(accounts.get(i), storage.get(accounts.get(i)) + 1);
+                expected.put(accounts.get(i), expected.get(accounts.get(i)) + 1);
+            }
+            Map<UUID, Long> visited = new HashMap<>();
+            storage.forEach((account, balance) -> assertThat(visited.put(account, balance)).isNull());
+
+            //Then
+            assertThat(visited).hasSize(5);
+            for (UUID account : accounts) {
+                assertThat(visited.get(account)).isEqualTo(expected.get(account));
+            }
+            assertThat(LedgerDigest.digestOf(storage)).isEqualTo(LedgerDigest.digestOf(expected));
+        }
+    }
+
+    @Test
+    public void shouldStartEmptyWhenReopened() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        UUID hot = UUID.randomUUID();
+        UUID cold = UUID.randomUUID();
+        try (TieredAccountStorage storage = new TieredAccountStorage(1, coldFile, 16)) {
+            storage.put(cold, 500);
+            storage.put(hot, 1500);
+        }
+        assertThat(coldFile).doesNotExist();
+        // a file left behind by a crash
+        Files.write(coldFile.toPath(), new byte[]{1, 2, 3});
+
+        //When
+        try (TieredAccountStorage storage = new TieredAccountStorage(1, coldFile, 16)) {
+            //Then
+            assertThat(storage.get(cold)).isEqualTo(AccountStorage.NO_ACCOUNT);
+            assertThat(storage.get(hot)).isEqualTo(AccountStorage.NO_ACCOUNT);
+            assertThat(storage.coldSize()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldKeepDigestAndIndexConsistentAfterRestart() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(
+                Thread::new, PerformanceProfiles.defaults().startupProfile(), new TieredAccountStorage(1, coldFile, 16))) {
+            createAccount(processor, 500);
+            createAccount(processor, 1500);
+        }
+
+        //When
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(
+                Thread::new, PerformanceProfiles.defaults().startupProfile(), new TieredAccountStorage(1, coldFile, 16))) {
+            UUID account = createAccount(processor, 700);
+            Map digest = digest(processor);
+
+            //Then
+            assertThat(digest.get("accounts")).isEqualTo(1L);
+            assertThat(digest.get("total")).isEqualTo(700L);
+            assertThat(processor.balanceIndex().top(10)).extracting(entry -> entry.account, entry -> entry.balance)
+                    .containsExactly(tuple(account, 700L));
+        }
+    }
+
+    @Test
+    public void shouldRejectCreateWhenColdTierCanNotTakeAnotherAccount() throws Exception {
+        //Given
+        File coldFile = coldFile();
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor(
+                Thread::new, PerformanceProfiles.defaults().startupProfile(), new TieredAccountStorage(1, coldFile, 2))) {
+            createAccount(processor, 100);
+            createAccount(processor, 200);
+
+            //When
+            AtomicReference<ResultCode> rejection = new AtomicReference<>();
+            AccountEvent createEvent = processor.nextEvent();
+            createEvent.eventType = EventType.CREATE;
+            createEvent.amount = 300;
+            createEvent.rejectionConsumer = (ctx, resultCode) -> rejection.set(resultCode);
+            processor.publishEvent(createEvent);
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> assertThat(rejection.get()).isEqualTo(ResultCode.STORAGE_FULL));
+            Map digest = digest(processor);
+            assertThat(digest.get("accounts")).isEqualTo(2L);
+            assertThat(digest.get("total")).isEqualTo(300L);
+        }
+    }
+
+    @Test
+    public void shouldRejectEmptyTiers() throws Exception {
+        //Given
+        File coldFile = coldFile();
+
+        //When //Then
+        assertThatThrownBy(() -> new TieredAccountStorage(0, coldFile, 16)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TieredAccountStorage(16, coldFile, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(coldFile).doesNotExist();
+    }
+
+    private static UUID createAccount(AccountOperationsEventProcessor processor, long amount) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent createEvent = processor.nextEvent();
+        createEvent.eventType = EventType.CREATE;
+        createEvent.amount = amount;
+        createEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        processor.publishEvent(createEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return UUID.fromString((String) NettyHttpUtil.extractPostRequestBody(payload.get()).get("account"));
+    }
+
+    private static Map digest(AccountOperationsEventProcessor processor) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent digestEvent = processor.nextEvent();
+        digestEvent.eventType = EventType.DIGEST;
+        digestEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        processor.publishEvent(digestEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return NettyHttpUtil.extractPostRequestBody(payload.get());
+    }
+
+    private static File coldFile() throws Exception {
+        File file = File.createTempFile("cold-accounts", ".dat");
+        Files.delete(file.toPath());
+        return file;
+    }
+}
@@ -0,0 +1,51 @@
+package com.transfer.ipc;
+
+import com.transfer.core.ResultCode;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Second JVM for IpcIngressTest: sends count transfers and prints the outcome of each on its own line.
+public class IpcClientProcess {
+
+    public static void main(String[] args) {
+        File directory = new File(args[0]);
+        int clientId = Integer.parseInt(args[1]);
+        UUID fromAccount = UUID.fromString(args[2]);
+        UUID toAccount = UUID.fromString(args[3]);
+        long amount = Long.parseLong(args[4]);
+        int count = Integer.parseInt(args[5]);
+
+        String[] outcomes = new String[count];
+        try (IpcClient client = new IpcClient(directory, clientId)) {
+            for (int i = 0; i < count; i++) {
+                while (client.transfer(fromAccount, toAccount, amount) == -1) {
+                    Thread.yield();
+                }
+            }
+            int[] replies = new int[1];
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (replies[0] < count && System.nanoTime() < deadline) {
+                if (client.poll((correlationId, status) -> outcomes[(int) correlationId] = outcome(status, replies)) == 0) {
+                    Thread.yield();
+                }
+            }
+            if (replies[0] < count) {
+                System.exit(1);
+            }
+        }
+        for (String outcome : outcomes) {
+            System.out.println(outcome);
+        }
+    }
+
+    private static String outcome(int status, int[] replies) {
+        replies[0]++;
+        if (status == IpcLayout.STATUS_SUCCESS) {
+            return "SUCCESS";
+        }
+        ResultCode rejection = IpcLayout.rejection(status);
+        return rejection == null ? "ERROR" : rejection.name();
+    }
+}
@@ -0,0 +1,215 @@
+package com.transfer.ipc;
+
+import com.transfer.core.AccountEvent;
+import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.EventType;
+import com.transfer.core.ResultCode;
+import com.transfer.netty.NettyHttpUtil;
+import org.awaitility.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class IpcIngressTest {
+
+    private AccountOperationsEventProcessor accountOperationsEventProcessor;
+    private IpcIngress ipcIngress;
+    private File directory;
+
+    @BeforeClass
+    public void init() throws Exception {
+        this.directory = Files.createTempDirectory("ipc").toFile();
+        this.accountOperationsEventProcessor = new AccountOperationsEventProcessor();
+        this.ipcIngress = new IpcIngress(directory, 64 * 1024, 64 * 1024, accountOperationsEventProcessor, Thread::new);
+    }
+
+    @AfterClass
+    public void close() {
+        ipcIngress.close();
+        accountOperationsEventProcessor.close();
+    }
+
+    @Test
+    public void shouldAnswerTransfersWithTheirOutcome() throws Exception {
+        //Given
+        UUID from = createAccount(1000);
+        UUID to = createAccount(0);
+        Map<Long, Integer> statuses = new HashMap<>();
+
+        try (IpcClient client = new IpcClient(directory, 1)) {
+            //When
+            long transferred = client.transfer(from, to, 600);
+            long insufficient = client.transfer(from, to, 600);
+            long unknown = client.transfer(UUID.randomUUID(), to, 1);
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> {
+                        client.poll(statuses::put);
+                        assertThat(statuses).hasSize(3);
+                    });
+            assertThat(statuses.get(transferred)).isEqualTo(IpcLayout.STATUS_SUCCESS);
+            assertThat(statuses.get(insufficient)).isEqualTo(IpcLayout.STATUS_INSUFFICIENT_FUNDS);
+            assertThat(statuses.get(unknown)).isEqualTo(IpcLayout.STATUS_FROM_ACCOUNT_NOT_FOUND);
+        }
+        assertThat(info(from).get("amount")).isEqualTo(400L);
+        assertThat(info(to).get("amount")).isEqualTo(600L);
+    }
+
+    @Test
+    public void shouldOnlyHandRepliesToTheClientThatSentTheCommand() throws Exception {
+        //Given
+        UUID from = createAccount(1000);
+        UUID to = createAccount(0);
+        Map<Long, Integer> ownStatuses = new HashMap<>();
+        Map<Long, Integer> otherStatuses = new HashMap<>();
+
+        try (IpcClient client = new IpcClient(directory, 2); IpcClient other = new IpcClient(directory, 3)) {
+            //When
+            client.transfer(from, to, 1);
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> {
+                        client.poll(ownStatuses::put);
+                        assertThat(ownStatuses).hasSize(1);
+                    });
+            other.poll(otherStatuses::put);
+            assertThat(otherStatuses).isEmpty();
+        }
+    }
+
+    @Test
+    public void shouldAcceptTransfersFromAnotherProcess() throws Exception {
+        //Given
+        UUID from = createAccount(1000);
+        UUID to = createAccount(0);
+
+        //When
+        Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                IpcClientProcess.class.getName(),
+                directory.getPath(), "4", from.toString(), to.toString(), "300", "4")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        List<String> outcomes;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            outcomes = reader.lines().collect(Collectors.toList());
+        }
+
+        //Then
+        assertThat(process.waitFor(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isEqualTo(0);
+        assertThat(outcomes).containsExactly("SUCCESS", "SUCCESS", "SUCCESS", "INSUFFICIENT_FUNDS");
+        assertThat(info(from).get("amount")).isEqualTo(100L);
+        assertThat(info(to).get("amount")).isEqualTo(900L);
+    }
+
+    @Test
+    public void shouldSkipAheadWhenLappedOnReplies() throws Exception {
+        //Given
+        File smallDirectory = Files.createTempDirectory("ipc").toFile();
+        UUID from = createAccount(1000);
+        UUID to = createAccount(0);
+        Map<Long, Integer> statuses = new HashMap<>();
+
+        try (IpcIngress smallIngress = new IpcIngress(smallDirectory, 64 * 1024, 1024, accountOperationsEventProcessor, Thread::new);
+             IpcClient client = new IpcClient(smallDirectory, 5)) {
+            for (int i = 0; i < 100; i++) {
+                assertThat(client.transfer(from, to, 1)).isEqualTo(i);
+            }
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> assertThat(info(to).get("amount")).isEqualTo(100L));
+
+            //When
+            client.poll(statuses::put);
+            long afterLap = client.transfer(from, to, 1);
+
+            //Then
+            assertThat(client.lapped()).isGreaterThan(0);
+            assertThat(statuses.size()).isLessThan(100);
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> {
+                        client.poll(statuses::put);
+                        assertThat(statuses.get(afterLap)).isEqualTo(IpcLayout.STATUS_SUCCESS);
+                    });
+        }
+    }
+
+    @Test
+    public void shouldGiveEveryResultCodeItsOwnWireStatus() {
+        //Given
+        Set<Integer> statuses = new HashSet<>();
+
+        for (ResultCode resultCode : ResultCode.values()) {
+            //When
+            int status = IpcLayout.status(resultCode);
+
+            //Then
+            assertThat(status).isNotIn(IpcLayout.STATUS_SUCCESS, IpcLayout.STATUS_ERROR);
+            assertThat(statuses.add(status)).isTrue();
+            assertThat(IpcLayout.rejection(status)).isEqualTo(resultCode);
+        }
+        assertThat(IpcLayout.rejection(IpcLayout.STATUS_SUCCESS)).isNull();
+        assertThat(IpcLayout.rejection(IpcLayout.STATUS_ERROR)).isNull();
+    }
+
+    private UUID createAccount(long amount) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent createEvent = accountOperationsEventProcessor.nextEvent();
+        createEvent.eventType = EventType.CREATE;
+        createEvent.amount = amount;
+        createEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(createEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return UUID.fromString((String) NettyHttpUtil.extractPostRequestBody(payload.get()).get("account"));
+    }
+
+    private Map info(UUID account) throws Exception {
+        AtomicReference<String> payload = new AtomicReference<>();
+        AccountEvent infoEvent = accountOperationsEventProcessor.nextEvent();
+        infoEvent.eventType = EventType.INFO;
+        infoEvent.accountFrom = account;
+        infoEvent.resultConsumer = (ctx, s) -> payload.set(s);
+        accountOperationsEventProcessor.publishEvent(infoEvent);
+
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(payload.get()).isNotNull());
+
+        return NettyHttpUtil.extractPostRequestBody(payload.get());
+    }
+}
@@ -0,0 +1,99 @@
+package com.transfer.netty;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.awaitility.Duration;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class BalanceSubscriptionsTest {
+
+    @Test
+    public void shouldConflateUpdatesForSlowSubscriber() {
+        //Given
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BalanceSubscriber subscriber = new BalanceSubscriber(channel);
+        UUID account = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
+
+        //When
+        subscriber.update(account, 100);
+        subscriber.update(account, 200);
+        subscriber.update(account, 300);
+        channel.runPendingTasks();
+
+        //Then
+        TextWebSocketFrame frame = channel.readOutbound();
+        assertThat(frame.text()).isEqualTo("{\"account\":\"" + account + "\", \"amount\":300 }");
+        assertThat(channel.outboundMessages()).isEmpty();
+        frame.release();
+    }
+
+    @Test
+    public void shouldOnlyPublishWatchedAccounts() {
+        //Given
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BalanceSubscriber subscriber = new BalanceSubscriber(channel);
+        UUID watched = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
+        UUID other = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce5");
+
+        try (BalanceSubscriptions subscriptions = new BalanceSubscriptions()) {
+            subscriptions.subscribe(watched, subscriber);
+
+            //When
+            subscriptions.balanceChanged(other, 100);
+            subscriptions.balanceChanged(watched, 200);
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_MILLISECOND)
+                    .untilAsserted(() -> {
+                        channel.runPendingTasks();
+                        TextWebSocketFrame frame = channel.readOutbound();
+                        assertThat(frame.text()).isEqualTo("{\"account\":\"" + watched + "\", \"amount\":200 }");
+                        frame.release();
+                    });
+            assertThat(channel.outboundMessages()).isEmpty();
+
+            subscriptions.unsubscribeAll(subscriber);
+            assertThat(subscriptions.watchedAccounts()).isZero();
+        }
+    }
+
+    @Test
+    public void shouldPingQuietSubscriptionsInsteadOfClosingThem() {
+        //Given
+        try (BalanceSubscriptions subscriptions = new BalanceSubscriptions()) {
+            EmbeddedChannel channel = new EmbeddedChannel(new BalanceSubscriptionHandler(subscriptions), new FlowExceptionInboundHandler());
+
+            //When
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT);
+
+            //Then
+            PingWebSocketFrame ping = channel.readOutbound();
+            assertThat(ping).isNotNull();
+            ping.release();
+            assertThat(channel.isActive()).isTrue();
+
+            //When
+            channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+
+            //Then
+            assertThat(channel.isActive()).isFalse();
+        }
+    }
+
+    @Test
+    public void shouldMatchBalancesPathWithQueryString() {
+        assertThat(BalanceWebSocketUpgradeHandler.isBalancesPath("/ws/balances")).isTrue();
+        assertThat(BalanceWebSocketUpgradeHandler.isBalancesPath("/ws/balances?client=gateway")).isTrue();
+        assertThat(BalanceWebSocketUpgradeHandler.isBalancesPath("/ws/balancesheet")).isFalse();
+        assertThat(BalanceWebSocketUpgradeHandler.isBalancesPath("/ws")).isFalse();
+    }
+}
@@ -0,0 +1,123 @@
+package com.transfer.netty;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpRouterTest {
+
+    private final HttpRouter router = new HttpRouter();
+
+    @Test
+    public void shouldMatchRouteAndParseAccount() {
+        //Given
+        UUID account = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + account, match);
+
+        //Then
+        assertThat(match.route).isEqualTo(Route.ACCOUNT_INFO);
+        assertThat(match.account()).isEqualTo(account);
+    }
+
+    @Test
+    public void shouldParseNumericParameters() {
+        //Given
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=10&limit=5&unknown=x", match);
+
+        //Then
+        assertThat(match.route).isEqualTo(Route.BALANCE_RANGE);
+        assertThat(match.from(0)).isEqualTo(10);
+        assertThat(match.limit(100)).isEqualTo(5);
+        assertThat(match.to(Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldNotMatchUnknownPathOrMethod() {
+        //Given
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST, match);
+        Route wrongMethod = match.route;
+        router.route(HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST + "/xxx", match);
+        Route wrongPath = match.route;
+        router.route(HttpMethod.DELETE, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST, match);
+
+        //Then
+        assertThat(wrongMethod).isEqualTo(Route.NOT_FOUND);
+        assertThat(wrongPath).isEqualTo(Route.NOT_FOUND);
+        assertThat(match.route).isEqualTo(Route.NOT_FOUND);
+    }
+
+    @Test
+    public void shouldFlagMalformedAccount() {
+        //Given
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=1473b088-f333-11e9-a713-2a2ae2dbcceX", match);
+
+        //Then
+        assertThat(match.route).isEqualTo(Route.ACCOUNT_INFO);
+        assertThat(match.malformed).isTrue();
+        assertThat(match.hasAccount).isFalse();
+    }
+
+    @Test
+    public void shouldFlagMalformedNumber() {
+        //Given
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST + "?limit=1x", match);
+        boolean malformed = match.malformed;
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST + "?limit=-5", match);
+
+        //Then
+        assertThat(malformed).isTrue();
+        assertThat(match.malformed).isFalse();
+        assertThat(match.limit(100)).isEqualTo(-5);
+    }
+
+    @Test
+    public void shouldDecodePercentEncodedParameters() {
+        //Given
+        UUID account = UUID.fromString("1473b088-f333-11e9-a713-2a2ae2dbcce4");
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + account.toString().replace("-", "%2D"), match);
+        Route accountRoute = match.route;
+        UUID decodedAccount = match.account();
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=%31%30&limit=5", match);
+
+        //Then
+        assertThat(accountRoute).isEqualTo(Route.ACCOUNT_INFO);
+        assertThat(decodedAccount).isEqualTo(account);
+        assertThat(match.route).isEqualTo(Route.BALANCE_RANGE);
+        assertThat(match.malformed).isFalse();
+        assertThat(match.from(0)).isEqualTo(10);
+        assertThat(match.limit(100)).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldFlagBrokenPercentEscape() {
+        //Given
+        RouteMatch match = new RouteMatch();
+
+        //When
+        router.route(HttpMethod.GET, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST + "?limit=%zz", match);
+
+        //Then
+        assertThat(match.malformed).isTrue();
+    }
+}
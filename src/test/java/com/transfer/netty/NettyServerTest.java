@@ -0,0 +1,322 @@
+package com.transfer.netty;
+
+import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.PerformanceProfiles;
+import com.transfer.core.RequestTimingEvent;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpClientUpgradeHandler;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.*;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.awaitility.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class NettyServerTest {
+
+    private AccountOperationsEventProcessor accountOperationsEventProcessor;
+    private NettyServer nettyServer;
+    private NioEventLoopGroup clientGroup;
+
+    @BeforeClass
+    public void init() throws Exception {
+        this.accountOperationsEventProcessor = new AccountOperationsEventProcessor();
+        this.nettyServer = new NettyServer(accountOperationsEventProcessor, 0);
+        this.nettyServer.start();
+        this.clientGroup = new NioEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public void close() {
+        clientGroup.shutdownGracefully();
+        nettyServer.stop();
+        accountOperationsEventProcessor.close();
+    }
+
+    @Test
+    public void shouldServeConcurrentStreamsOverPriorKnowledgeConnection() throws Exception {
+        //Given
+        Channel connection = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel socketChannel) {
+                        socketChannel.pipeline().addLast(
+                                Http2FrameCodecBuilder.forClient().build(),
+                                new Http2MultiplexHandler(new ChannelInboundHandlerAdapter())
+                        );
+                    }
+                })
+                .connect(nettyServer.localAddress())
+                .sync()
+                .channel();
+
+        AtomicReference<CharSequence> firstStatus = new AtomicReference<>();
+        AtomicReference<CharSequence> secondStatus = new AtomicReference<>();
+        Http2StreamChannel firstStream = openStream(connection, firstStatus);
+        Http2StreamChannel secondStream = openStream(connection, secondStatus);
+
+        //When
+        String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}";
+        writeCreateRequest(firstStream, payload);
+        writeCreateRequest(secondStream, payload);
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> {
+                    assertThat(firstStatus.get()).hasToString("200");
+                    assertThat(secondStatus.get()).hasToString("200");
+                });
+        assertThat(connection.isActive()).isTrue();
+        connection.close();
+    }
+
+    @Test
+    public void shouldServeRequestsOverCleartextUpgradedConnection() throws Exception {
+        //Given
+        AtomicReference<Object> upgradeEvent = new AtomicReference<>();
+        AtomicReference<CharSequence> upgradeStatus = new AtomicReference<>();
+        Channel connection = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel socketChannel) {
+                        HttpClientCodec httpClientCodec = new HttpClientCodec();
+                        // stream 1 carries the response to the request that asked for the upgrade
+                        Http2ConnectionHandler frameCodec = Http2FrameCodecBuilder.forClient().build();
+                        Http2MultiplexHandler multiplexHandler = new Http2MultiplexHandler(new ChannelInboundHandlerAdapter(), statusHandler(upgradeStatus));
+                        Http2ClientUpgradeCodec upgradeCodec = new Http2ClientUpgradeCodec(frameCodec, multiplexHandler);
+                        socketChannel.pipeline().addLast(
+                                httpClientCodec,
+                                new HttpClientUpgradeHandler(httpClientCodec, upgradeCodec, 65536),
+                                new ChannelInboundHandlerAdapter() {
+                                    @Override
+                                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                                        if (evt instanceof HttpClientUpgradeHandler.UpgradeEvent) {
+                                            upgradeEvent.set(evt);
+                                        }
+                                        ctx.fireUserEventTriggered(evt);
+                                    }
+                                }
+                        );
+                    }
+                })
+                .connect(nettyServer.localAddress())
+                .sync()
+                .channel();
+
+        //When
+        DefaultFullHttpRequest upgradeRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST);
+        upgradeRequest.headers().set(HttpHeaderNames.HOST, "localhost");
+        connection.writeAndFlush(upgradeRequest).sync();
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> {
+                    assertThat(upgradeEvent.get()).isEqualTo(HttpClientUpgradeHandler.UpgradeEvent.UPGRADE_SUCCESSFUL);
+                    assertThat(upgradeStatus.get()).hasToString("200");
+                });
+
+        AtomicReference<CharSequence> streamStatus = new AtomicReference<>();
+        Http2StreamChannel stream = openStream(connection, streamStatus);
+        writeCreateRequest(stream, "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}");
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> assertThat(streamStatus.get()).hasToString("200"));
+        assertThat(connection.isActive()).isTrue();
+        connection.close();
+    }
+
+    @Test
+    public void shouldRecordSampledRequestTiming() throws Exception {
+        //Given
+        NettyServer sampledServer = new NettyServer(accountOperationsEventProcessor, 0,
+                new DefaultThreadFactory("test.boss"), new DefaultThreadFactory("test.worker"),
+                RateLimiters.disabled(), PerformanceProfiles.defaults(), new RequestTimingSampler(1));
+        sampledServer.start();
+        Path dump = Files.createTempFile("request-timing", ".jfr");
+
+        List<RecordedEvent> events = new ArrayList<>();
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestTimingEvent.class);
+            recording.start();
+
+            //When
+            String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}";
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), sampledServer.port())) {
+                socket.getOutputStream().write(("POST " + HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST + " HTTP/1.1\r\n" +
+                        "Content-Length: " + payload.length() + "\r\n\r\n" + payload).getBytes());
+                socket.getInputStream().readAllBytes();
+            }
+
+            //Then
+            await()
+                    .atMost(Duration.FIVE_SECONDS)
+                    .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
+                    .untilAsserted(() -> {
+                        recording.dump(dump);
+                        events.clear();
+                        events.addAll(RecordingFile.readAllEvents(dump));
+                        assertThat(events).hasSize(1);
+                    });
+        } finally {
+            sampledServer.stop();
+            Files.delete(dump);
+        }
+
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("route")).isEqualTo(Route.ACCOUNT_CREATE.name());
+        assertThat(event.getLong("receivedNanos")).isPositive();
+        assertThat(event.getLong("claimedNanos")).isGreaterThanOrEqualTo(event.getLong("receivedNanos"));
+        assertThat(event.getLong("handleStartNanos")).isGreaterThanOrEqualTo(event.getLong("claimedNanos"));
+        assertThat(event.getLong("handleEndNanos")).isGreaterThanOrEqualTo(event.getLong("handleStartNanos"));
+        assertThat(event.getLong("flushedNanos")).isGreaterThanOrEqualTo(event.getLong("handleEndNanos"));
+    }
+
+    @Test
+    public void shouldPushBalanceChangesToWebSocketSubscribers() throws Exception {
+        //Given
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String fromAccount = createAccount(client, 2000);
+        String toAccount = createAccount(client, 500);
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        WebSocket webSocket = client.newWebSocketBuilder()
+                .buildAsync(URI.create("ws://localhost:" + nettyServer.port() + BalanceSubscriptionHandler.BALANCES_WEBSOCKET_PATH + "?client=test"), new WebSocket.Listener() {
+                    @Override
+                    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                        messages.add(data.toString());
+                        webSocket.request(1);
+                        return null;
+                    }
+                })
+                .get(5, TimeUnit.SECONDS);
+        webSocket.sendText("{\"" + BalanceSubscriptionHandler.SUBSCRIBE_PARAMETER + "\":[\"" + toAccount + "\"]}", true);
+        assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("{\"" + BalanceSubscriptionHandler.SUBSCRIBED_PARAMETER + "\":1 }");
+
+        //When
+        String payload = "{\"" + HttpRequestEventInboundHandler.ACCOUNT_FROM_REQUEST_PARAMETER + "\":\"" + fromAccount + "\"," +
+                "\"" + HttpRequestEventInboundHandler.ACCOUNT_TO_REQUEST_PARAMETER + "\":\"" + toAccount + "\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 100}";
+        HttpResponse<String> transfer = post(client, HttpRequestEventInboundHandler.TRANSFER_REQUEST, payload);
+
+        //Then
+        assertThat(transfer.statusCode()).isEqualTo(200);
+        assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("{\"account\":\"" + toAccount + "\", \"amount\":600 }");
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldApplyPostingLegsInOneRequest() throws Exception {
+        //Given
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String payer = createAccount(client, 1000);
+        String seller = createAccount(client, 0);
+        String platform = createAccount(client, 0);
+
+        //When
+        String payload = "{\"" + HttpRequestEventInboundHandler.LEGS_REQUEST_PARAMETER + "\":[" +
+                leg(payer, -1000) + "," + leg(seller, 970) + "," + leg(platform, 30) + "]}";
+        HttpResponse<String> posting = post(client, HttpRequestEventInboundHandler.POSTING_REQUEST, payload);
+        HttpResponse<String> unbalanced = post(client, HttpRequestEventInboundHandler.POSTING_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.LEGS_REQUEST_PARAMETER + "\":[" + leg(seller, -10) + "," + leg(platform, 20) + "]}");
+        HttpResponse<String> malformed = post(client, HttpRequestEventInboundHandler.POSTING_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.LEGS_REQUEST_PARAMETER + "\":[" + leg(seller, -10) + ",{}]}");
+
+        //Then
+        assertThat(posting.statusCode()).isEqualTo(200);
+        assertThat(unbalanced.statusCode()).isEqualTo(422);
+        assertThat(unbalanced.body()).contains("UNBALANCED_POSTING");
+        assertThat(malformed.statusCode()).isEqualTo(400);
+        HttpResponse<String> sellerInfo = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + nettyServer.port() +
+                HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + seller)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(NettyHttpUtil.extractPostRequestBody(sellerInfo.body()).get("amount")).isEqualTo(970L);
+    }
+
+    private static String leg(String account, long amount) {
+        return "{\"" + HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER + "\":\"" + account + "\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\":" + amount + "}";
+    }
+
+    private String createAccount(HttpClient client, long amount) throws Exception {
+        HttpResponse<String> response = post(client, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": " + amount + "}");
+        return (String) NettyHttpUtil.extractPostRequestBody(response.body()).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+    }
+
+    private HttpResponse<String> post(HttpClient client, String path, String payload) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + nettyServer.port() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Http2StreamChannel openStream(Channel connection, AtomicReference<CharSequence> status) throws Exception {
+        return new Http2StreamChannelBootstrap(connection)
+                .handler(statusHandler(status))
+                .open()
+                .sync()
+                .getNow();
+    }
+
+    private static SimpleChannelInboundHandler<Http2HeadersFrame> statusHandler(AtomicReference<CharSequence> status) {
+        return new SimpleChannelInboundHandler<Http2HeadersFrame>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, Http2HeadersFrame frame) {
+                status.set(frame.headers().status());
+            }
+        };
+    }
+
+    private void writeCreateRequest(Http2StreamChannel stream, String payload) {
+        Http2Headers headers = new DefaultHttp2Headers()
+                .method("POST")
+                .scheme("http")
+                .path(HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST);
+        stream.write(new DefaultHttp2HeadersFrame(headers));
+        stream.writeAndFlush(new DefaultHttp2DataFrame(Unpooled.wrappedBuffer(payload.getBytes()), true));
+    }
+}
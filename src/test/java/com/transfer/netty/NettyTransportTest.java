@@ -1,14 +1,28 @@
 package com.transfer.netty;
 
 import com.transfer.core.AccountOperationsEventProcessor;
+import com.transfer.core.ResultCode;
+import com.transfer.core.PerformanceProfiles;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.*;
 import io.netty.util.CharsetUtil;
 import org.awaitility.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
-
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -16,10 +30,22 @@ import static org.awaitility.Awaitility.await;
 
 public class NettyTransportTest {
 
+    private AccountOperationsEventProcessor accountOperationsEventProcessor;
+
+    @BeforeClass
+    public void init() {
+        this.accountOperationsEventProcessor = new AccountOperationsEventProcessor();
+    }
+
+    @AfterClass
+    public void close() {
+        accountOperationsEventProcessor.close();
+    }
+
     @Test
     public void shouldCreateAccount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}";
@@ -40,7 +66,7 @@ public class NettyTransportTest {
     @Test
     public void shouldNotCreateAccountWithNegativeAmount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": -2000}";
@@ -54,14 +80,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(422);
                 });
     }
 
     @Test
     public void shouldNotCreateAccountWithWrongAmount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": XXX}";
@@ -75,14 +101,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(400);
                 });
     }
 
     @Test
     public void shouldNotCreateAccountWithMissedAmount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String payload = "{\"XXX\": XXX}";
@@ -96,13 +122,13 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(400);
                 });
     }
 
     @Test
     public void shouldCreateAccountAndGetInfo() {
-        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor());
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
         FlowExceptionInboundHandler flowExceptionInboundHandler = new FlowExceptionInboundHandler();
         //Given
         EmbeddedChannel channelCreate = new EmbeddedChannel(httpRequestEventInboundHandler, flowExceptionInboundHandler);
@@ -143,7 +169,7 @@ public class NettyTransportTest {
     @Test
     public void shouldNotReturnInfoWithWrongAccount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String uuid = "xxx";
@@ -157,14 +183,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(400);
                 });
     }
 
     @Test
     public void shouldNotReturnInfoWithNotPresentAccount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         String uuid = "1473b088-f333-11e9-a713-2a2ae2dbcce4";
@@ -178,14 +204,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(404);
                 });
     }
 
     @Test
     public void shouldNotReturnInfoWithMissedAccount() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST);
@@ -198,14 +224,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(400);
                 });
     }
 
     @Test
     public void shouldTransferCorrect() {
         //Given
-        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor());
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
         FlowExceptionInboundHandler flowExceptionInboundHandler = new FlowExceptionInboundHandler();
 
         EmbeddedChannel channelCreateFrom = new EmbeddedChannel(httpRequestEventInboundHandler, flowExceptionInboundHandler);
@@ -267,7 +293,7 @@ public class NettyTransportTest {
         String payload = "{\"" + HttpRequestEventInboundHandler.ACCOUNT_FROM_REQUEST_PARAMETER + "\":\"" + uuidFrom + "\"," +
                 "\"" + HttpRequestEventInboundHandler.ACCOUNT_TO_REQUEST_PARAMETER + "\":\"" + uuidTo + "\"," +
                 "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 100}";
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
         FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.TRANSFER_REQUEST, Unpooled.wrappedBuffer(payload.getBytes()));
         channel.writeInbound(httpRequest);
 
@@ -277,14 +303,14 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channel.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(404);
                 });
     }
 
     @Test
     public void shouldNotTransferIfNotEnoughAmount() {
         //Given
-        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor());
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
         FlowExceptionInboundHandler flowExceptionInboundHandler = new FlowExceptionInboundHandler();
 
         EmbeddedChannel channelCreateFrom = new EmbeddedChannel(httpRequestEventInboundHandler, flowExceptionInboundHandler);
@@ -333,14 +359,16 @@ public class NettyTransportTest {
                 .ignoreExceptions()
                 .untilAsserted(() -> {
                     DefaultFullHttpResponse res = channelTransfer.readOutbound();
-                    assertThat(res.status().code()).isEqualTo(500);
+                    assertThat(res.status().code()).isEqualTo(409);
+                    assertThat(NettyHttpUtil.extractPostRequestBody(res.content().toString(CharsetUtil.UTF_8)).get("error"))
+                            .isEqualTo(ResultCode.INSUFFICIENT_FUNDS.name());
                 });
     }
 
     @Test
     public void shouldNotProccesIncorrectUrls() {
         //Given
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(new AccountOperationsEventProcessor()), new FlowExceptionInboundHandler());
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
 
         //When
         FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "XXX");
@@ -356,4 +384,390 @@ public class NettyTransportTest {
                     assertThat(res.status().code()).isEqualTo(404);
                 });
     }
+
+    @Test
+    public void shouldRejectRequestsOverAddressRateLimit() {
+        //Given
+        RateLimiters rateLimiters = new RateLimiters(new TokenBucketRateLimiter(1, 0), TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled());
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor, rateLimiters);
+        EmbeddedChannel channel = new EmbeddedChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}";
+
+        //When
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .ignoreExceptions()
+                .untilAsserted(() -> {
+                    DefaultFullHttpResponse res = channel.readOutbound();
+                    assertThat(res.status().code()).isEqualTo(200);
+                });
+        EmbeddedChannel nextChannel = new EmbeddedChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        nextChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+
+        //Then
+        DefaultFullHttpResponse res = nextChannel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(429);
+    }
+
+    @Test
+    public void shouldRejectTransfersOverSourceAccountRateLimit() {
+        //Given
+        RateLimiters rateLimiters = new RateLimiters(TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled(), new TokenBucketRateLimiter(1, 0));
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor, rateLimiters);
+        EmbeddedChannel channel = new EmbeddedChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        String payload = "{\"" + HttpRequestEventInboundHandler.ACCOUNT_FROM_REQUEST_PARAMETER + "\":\"1473b088-f333-11e9-a713-2a2ae2dbcce4\"," +
+                "\"" + HttpRequestEventInboundHandler.ACCOUNT_TO_REQUEST_PARAMETER + "\":\"1473b088-f333-11e9-a713-2a2ae2dbcce5\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 100}";
+
+        //When
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.TRANSFER_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .ignoreExceptions()
+                .untilAsserted(() -> {
+                    DefaultFullHttpResponse res = channel.readOutbound();
+                    assertThat(res.status().code()).isEqualTo(404);
+                });
+        EmbeddedChannel nextChannel = new EmbeddedChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        nextChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.TRANSFER_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+
+        //Then
+        DefaultFullHttpResponse res = nextChannel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(429);
+    }
+
+    @Test
+    public void shouldLimitIpv6AddressesWithSameHashCodeSeparately() throws Exception {
+        //Given
+        InetAddress first = InetAddress.getByName("2001:db8:0:1::");
+        InetAddress second = InetAddress.getByName("2001:db8::1:0:0");
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+        RateLimiters rateLimiters = new RateLimiters(new TokenBucketRateLimiter(1, 0), TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled());
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor, rateLimiters);
+        String payload = "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 2000}";
+
+        //When
+        EmbeddedChannel firstChannel = remoteChannel(first, httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        firstChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+        EmbeddedChannel secondChannel = remoteChannel(second, httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+        secondChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+
+        //Then
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .ignoreExceptions()
+                .untilAsserted(() -> {
+                    DefaultFullHttpResponse res = secondChannel.readOutbound();
+                    assertThat(res.status().code()).isEqualTo(200);
+                });
+    }
+
+    @Test
+    public void shouldGiveBackTokensOfEarlierLegsWhenPostingIsRateLimited() {
+        //Given
+        RateLimiters rateLimiters = new RateLimiters(TokenBucketRateLimiter.disabled(), TokenBucketRateLimiter.disabled(), new TokenBucketRateLimiter(1, 0));
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor, rateLimiters);
+        String first = "1473b088-f333-11e9-a713-2a2ae2dbcce6";
+        String second = "1473b088-f333-11e9-a713-2a2ae2dbcce7";
+        String credited = "1473b088-f333-11e9-a713-2a2ae2dbcce8";
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TRANSFER_REQUEST, transferPayload(second, credited), 404);
+
+        //When
+        String postingPayload = "{\"" + HttpRequestEventInboundHandler.LEGS_REQUEST_PARAMETER + "\":[" +
+                leg(first, -100) + "," + leg(second, -100) + "," + leg(credited, 200) + "]}";
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.POSTING_REQUEST, postingPayload, 429);
+
+        //Then
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TRANSFER_REQUEST, transferPayload(first, credited), 404);
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TRANSFER_REQUEST, transferPayload(first, credited), 429);
+    }
+
+    private static String transferPayload(String from, String to) {
+        return "{\"" + HttpRequestEventInboundHandler.ACCOUNT_FROM_REQUEST_PARAMETER + "\":\"" + from + "\"," +
+                "\"" + HttpRequestEventInboundHandler.ACCOUNT_TO_REQUEST_PARAMETER + "\":\"" + to + "\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 100}";
+    }
+
+    private static String leg(String account, long amount) {
+        return "{\"" + HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER + "\":\"" + account + "\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\":" + amount + "}";
+    }
+
+    @Test
+    public void shouldRejectUndecodableRequest() {
+        //Given
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
+        FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST);
+        httpRequest.setDecoderResult(DecoderResult.failure(new TooLongFrameException("header is too long")));
+
+        //When
+        channel.writeInbound(httpRequest);
+
+        //Then
+        DefaultFullHttpResponse res = channel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(400);
+    }
+
+    @Test
+    public void shouldNotHideUnexpectedIllegalArgumentAsClientError() {
+        //Given
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                throw new IllegalArgumentException("bug in the pipeline");
+            }
+        }, new FlowExceptionInboundHandler());
+
+        //When
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST));
+
+        //Then
+        DefaultFullHttpResponse res = channel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(500);
+    }
+
+    @Test
+    public void shouldSwitchProfileAndReadItBack() throws Exception {
+        //Given
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor()) {
+            HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(processor);
+            EmbeddedChannel switchChannel = loopbackChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+            String payload = "{\"" + HttpRequestEventInboundHandler.PROFILE_REQUEST_PARAMETER + "\":\"" + PerformanceProfiles.LOW_CPU + "\"}";
+
+            //When
+            switchChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.PROFILE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+            DefaultFullHttpResponse switched = switchChannel.readOutbound();
+            EmbeddedChannel infoChannel = loopbackChannel(httpRequestEventInboundHandler, new FlowExceptionInboundHandler());
+            infoChannel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, HttpRequestEventInboundHandler.PROFILE_REQUEST));
+            DefaultFullHttpResponse info = infoChannel.readOutbound();
+
+            //Then
+            // only the wait strategy of the requested profile is applied, the ring keeps its startup settings
+            String lowCpuWaitStrategy = PerformanceProfiles.defaults().get(PerformanceProfiles.LOW_CPU).waitStrategy();
+            assertThat(switched.status().code()).isEqualTo(200);
+            assertThat(info.status().code()).isEqualTo(200);
+            Map body = NettyHttpUtil.extractPostRequestBody(info.content().toString(CharsetUtil.UTF_8));
+            assertThat(body.get("waitStrategy")).isEqualTo(lowCpuWaitStrategy);
+            assertThat(body.get("profile")).isEqualTo(PerformanceProfiles.LOWEST_LATENCY);
+            assertThat(processor.profile().waitStrategy()).isEqualTo(lowCpuWaitStrategy);
+            assertThat(processor.profile().ringSize()).isEqualTo(PerformanceProfiles.defaults().startupProfile().ringSize());
+        }
+    }
+
+    @Test
+    public void shouldRejectUnknownProfile() {
+        //Given
+        EmbeddedChannel channel = loopbackChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
+        String payload = "{\"" + HttpRequestEventInboundHandler.PROFILE_REQUEST_PARAMETER + "\":\"fastest\"}";
+
+        //When
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.PROFILE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+
+        //Then
+        DefaultFullHttpResponse res = channel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(400);
+        assertThat(accountOperationsEventProcessor.profile().waitStrategy()).isEqualTo(PerformanceProfiles.defaults().startupProfile().waitStrategy());
+    }
+
+    @Test
+    public void shouldForbidProfileSwitchFromRemoteClient() {
+        //Given
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEventInboundHandler(accountOperationsEventProcessor), new FlowExceptionInboundHandler());
+        String payload = "{\"" + HttpRequestEventInboundHandler.PROFILE_REQUEST_PARAMETER + "\":\"" + PerformanceProfiles.LOW_CPU + "\"}";
+
+        //When
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HttpRequestEventInboundHandler.PROFILE_REQUEST, Unpooled.wrappedBuffer(payload.getBytes())));
+
+        //Then
+        DefaultFullHttpResponse res = channel.readOutbound();
+        assertThat(res.status().code()).isEqualTo(403);
+        assertThat(accountOperationsEventProcessor.profile().waitStrategy()).isEqualTo(PerformanceProfiles.defaults().startupProfile().waitStrategy());
+    }
+
+    @Test
+    public void shouldHoldCaptureAndReleaseOverHttp() throws Exception {
+        //Given
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
+        String from = (String) body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 1000}", 200)).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+        String to = (String) body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 1000}", 200)).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+        String holdPayload = "{\"" + HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER + "\":\"" + from + "\"," +
+                "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 300," +
+                "\"" + HttpRequestEventInboundHandler.TIMEOUT_REQUEST_PARAMETER + "\": 60000}";
+
+        //When
+        Object capturedHold = body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.HOLD_REQUEST, holdPayload, 200))
+                .get(HttpRequestEventInboundHandler.HOLD_REQUEST_PARAMETER);
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.CAPTURE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.HOLD_REQUEST_PARAMETER + "\": " + capturedHold + "," +
+                        "\"" + HttpRequestEventInboundHandler.ACCOUNT_TO_REQUEST_PARAMETER + "\":\"" + to + "\"}", 200);
+        Object releasedHold = body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.HOLD_REQUEST, holdPayload, 200))
+                .get(HttpRequestEventInboundHandler.HOLD_REQUEST_PARAMETER);
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.RELEASE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.HOLD_REQUEST_PARAMETER + "\": " + releasedHold + "}", 200);
+
+        //Then
+        post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.RELEASE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.HOLD_REQUEST_PARAMETER + "\": " + capturedHold + "}", 404);
+        Map fromInfo = body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + from, 200));
+        assertThat(fromInfo.get("amount")).isEqualTo(700L);
+        assertThat(fromInfo.get("reserved")).isEqualTo(0L);
+        assertThat(body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + to, 200)).get("amount"))
+                .isEqualTo(1300L);
+    }
+
+    @Test
+    public void shouldRejectNonPositiveHoldTimeout() throws Exception {
+        //Given
+        HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(accountOperationsEventProcessor);
+        String account = (String) body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 1000}", 200)).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+
+        for (String timeout : new String[]{"0", "-5", "\"soon\""}) {
+            //When
+            String payload = "{\"" + HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER + "\":\"" + account + "\"," +
+                    "\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 300," +
+                    "\"" + HttpRequestEventInboundHandler.TIMEOUT_REQUEST_PARAMETER + "\": " + timeout + "}";
+
+            //Then
+            assertThat(body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.HOLD_REQUEST, payload, 400)).get("error"))
+                    .isEqualTo(ResultCode.MALFORMED_REQUEST.name());
+        }
+        assertThat(body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_INFO_REQUEST + "?account=" + account, 200)).get("reserved"))
+                .isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldListTopBalancesWithDefaultAndExplicitLimit() throws Exception {
+        //Given
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor()) {
+            HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(processor);
+            for (long amount = 1; amount <= 120; amount++) {
+                post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                        "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": " + amount + "}", 200);
+            }
+
+            //When
+            List<Long> defaultLimit = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST, 200));
+            List<Long> explicitLimit = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST + "?limit=3", 200));
+
+            //Then
+            assertThat(defaultLimit).hasSize(100);
+            assertThat(defaultLimit.get(0)).isEqualTo(120L);
+            assertThat(defaultLimit.get(99)).isEqualTo(21L);
+            assertThat(explicitLimit).containsExactly(120L, 119L, 118L);
+            for (String limit : new String[]{"0", "-1", "10001", "ten"}) {
+                get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TOP_BALANCES_REQUEST + "?limit=" + limit, 400);
+            }
+        }
+    }
+
+    @Test
+    public void shouldListBalancesInRange() throws Exception {
+        //Given
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor()) {
+            HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(processor);
+            for (long amount = 10; amount <= 50; amount += 10) {
+                post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                        "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": " + amount + "}", 200);
+            }
+
+            //When
+            List<Long> bounded = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=20&to=40", 200));
+            List<Long> limited = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=20&limit=2", 200));
+            List<Long> unbounded = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST, 200));
+            List<Long> inverted = amounts(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=40&to=20", 200));
+
+            //Then
+            assertThat(bounded).containsExactly(40L, 30L, 20L);
+            assertThat(limited).containsExactly(50L, 40L);
+            assertThat(unbounded).containsExactly(50L, 40L, 30L, 20L, 10L);
+            assertThat(inverted).isEmpty();
+            get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.BALANCE_RANGE_REQUEST + "?from=20&limit=0", 400);
+        }
+    }
+
+    @Test
+    public void shouldServeLedgerDigest() throws Exception {
+        //Given
+        try (AccountOperationsEventProcessor processor = new AccountOperationsEventProcessor()) {
+            HttpRequestEventInboundHandler httpRequestEventInboundHandler = new HttpRequestEventInboundHandler(processor);
+            Map empty = body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST, 200));
+            String from = (String) body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                    "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 1000}", 200)).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+            String to = (String) body(post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.ACCOUNT_CREATE_REQUEST,
+                    "{\"" + HttpRequestEventInboundHandler.AMOUNT_REQUEST_PARAMETER + "\": 500}", 200)).get(HttpRequestEventInboundHandler.ACCOUNT_REQUEST_PARAMETER);
+
+            //When
+            Map created = body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST, 200));
+            post(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.TRANSFER_REQUEST, transferPayload(from, to), 200);
+            Map transferred = body(get(httpRequestEventInboundHandler, HttpRequestEventInboundHandler.LEDGER_DIGEST_REQUEST, 200));
+
+            //Then
+            assertThat(empty.get("accounts")).isEqualTo(0L);
+            assertThat(empty.get("digest")).isEqualTo("0000000000000000");
+            assertThat(created.get("accounts")).isEqualTo(2L);
+            assertThat(created.get("total")).isEqualTo(1500L);
+            assertThat((String) created.get("digest")).matches("[0-9a-f]{16}").isNotEqualTo(empty.get("digest"));
+            assertThat(transferred.get("accounts")).isEqualTo(2L);
+            assertThat(transferred.get("total")).isEqualTo(1500L);
+            assertThat(transferred.get("digest")).isNotEqualTo(created.get("digest"));
+            assertThat((Long) transferred.get("sequence")).isGreaterThan((Long) created.get("sequence"));
+        }
+    }
+
+    private static List<Long> amounts(DefaultFullHttpResponse response) throws Exception {
+        List<Long> amounts = new ArrayList<>();
+        for (Object account : (List) body(response).get("accounts")) {
+            amounts.add((Long) ((Map) account).get("amount"));
+        }
+        return amounts;
+    }
+
+    private static DefaultFullHttpResponse post(HttpRequestEventInboundHandler handler, String uri, String payload, int status) {
+        return exchange(handler, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri, Unpooled.wrappedBuffer(payload.getBytes())), status);
+    }
+
+    private static DefaultFullHttpResponse get(HttpRequestEventInboundHandler handler, String uri, int status) {
+        return exchange(handler, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri), status);
+    }
+
+    private static DefaultFullHttpResponse exchange(HttpRequestEventInboundHandler handler, FullHttpRequest httpRequest, int status) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new FlowExceptionInboundHandler());
+        channel.writeInbound(httpRequest);
+        AtomicReference<DefaultFullHttpResponse> response = new AtomicReference<>();
+        await()
+                .atMost(Duration.FIVE_SECONDS)
+                .pollInterval(Duration.ONE_MILLISECOND)
+                .untilAsserted(() -> {
+                    if (response.get() == null) {
+                        response.set(channel.readOutbound());
+                    }
+                    assertThat(response.get()).isNotNull();
+                });
+        assertThat(response.get().status().code()).isEqualTo(status);
+        return response.get();
+    }
+
+    private static Map body(DefaultFullHttpResponse response) throws Exception {
+        return NettyHttpUtil.extractPostRequestBody(response.content().toString(CharsetUtil.UTF_8));
+    }
+
+    private static EmbeddedChannel loopbackChannel(ChannelHandler... handlers) {
+        return remoteChannel(InetAddress.getLoopbackAddress(), handlers);
+    }
+
+    private static EmbeddedChannel remoteChannel(InetAddress address, ChannelHandler... handlers) {
+        return new EmbeddedChannel(handlers) {
+            @Override
+            protected SocketAddress remoteAddress0() {
+                return new InetSocketAddress(address, 50000);
+            }
+        };
+    }
 }
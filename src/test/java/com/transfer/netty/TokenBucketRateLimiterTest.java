@@ -0,0 +1,94 @@
+package com.transfer.netty;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketRateLimiterTest {
+
+    private static final long KEY = 42;
+
+    @Test
+    public void shouldGrantRefillRateThatDoesNotDivideSecond() {
+        for (long refillPerSecond : new long[]{1500, 2500, 7, 999, 1001}) {
+            //Given
+            AtomicLong clock = new AtomicLong();
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, refillPerSecond, 16, clock::get);
+
+            //When
+            long granted = 0;
+            long durationNanos = TimeUnit.SECONDS.toNanos(2);
+            for (long now = 0; now <= durationNanos; now += TimeUnit.MICROSECONDS.toNanos(100)) {
+                clock.set(now);
+                for (int attempt = 0; attempt < 4; attempt++) {
+                    if (limiter.tryAcquire(KEY)) {
+                        granted++;
+                    }
+                }
+            }
+
+            //Then
+            // demand outruns the refill, so after the initial burst every token is taken as soon as it is due
+            long expected = 100 + refillPerSecond * 2;
+            assertThat(granted).as("refill %d/s", refillPerSecond).isBetween(expected - 1, expected + 1);
+        }
+    }
+
+    @Test
+    public void shouldGrantBurstUpToCapacity() {
+        //Given
+        AtomicLong clock = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1500, 16, clock::get);
+
+        //When
+        long granted = 0;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            if (limiter.tryAcquire(KEY)) {
+                granted++;
+            }
+        }
+
+        //Then
+        assertThat(granted).isEqualTo(10);
+        clock.set(TimeUnit.SECONDS.toNanos(1));
+        for (int attempt = 0; attempt < 10; attempt++) {
+            assertThat(limiter.tryAcquire(KEY)).isTrue();
+        }
+        assertThat(limiter.tryAcquire(KEY)).isFalse();
+    }
+
+    @Test
+    public void shouldNeverRefillWithoutRefillRate() {
+        //Given
+        AtomicLong clock = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 0, 16, clock::get);
+
+        //When
+        assertThat(limiter.tryAcquire(KEY)).isTrue();
+        assertThat(limiter.tryAcquire(KEY)).isTrue();
+        clock.set(TimeUnit.DAYS.toNanos(365));
+
+        //Then
+        assertThat(limiter.tryAcquire(KEY)).isFalse();
+    }
+
+    @Test
+    public void shouldGiveBackReleasedToken() {
+        //Given
+        AtomicLong clock = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 16, clock::get);
+        assertThat(limiter.tryAcquire(KEY)).isTrue();
+        assertThat(limiter.tryAcquire(KEY)).isFalse();
+
+        //When
+        limiter.release(KEY);
+        limiter.release(KEY);
+
+        //Then
+        assertThat(limiter.tryAcquire(KEY)).isTrue();
+        assertThat(limiter.tryAcquire(KEY)).isFalse();
+    }
+}